@@ -0,0 +1,192 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.Skill;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.runepal.BotConfig;
+import com.runepal.shortestpath.QueueType;
+import com.runepal.shortestpath.SearchAlgorithm;
+import com.runepal.shortestpath.Util;
+import com.runepal.shortestpath.WorldPointUtil;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmarks {@link Pathfinder#run()} over the checked-in route corpus in benchmark_routes.tsv.
+ * Each operation runs every route of one category, so ns/op is the cost of the whole category.
+ * Run with {@code ./gradlew jmh}; allocation rates are reported by the gc profiler.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+public class PathfinderBenchmark {
+    private static final String ROUTES_PATH = "/benchmark_routes.tsv";
+
+    @Param({"SHORT", "LONG", "TRANSPORT", "UNREACHABLE"})
+    public String category;
+
+    /**
+     * The search algorithm, with the queue for breadth-first as BOUNDARY or BUCKET. The other algorithms pick
+     * their own queue, so they are only run once rather than once per queue type.
+     */
+    @Param({"BOUNDARY", "BUCKET", "A_STAR", "HIERARCHICAL", "BIDIRECTIONAL"})
+    public String search;
+
+    /** 0 stops at the time cutoff; a budget stops every run at the same node, so runs compare across machines */
+    @Param({"0", "200000"})
+    public int nodeBudget;
+
+    private PathfinderConfig config;
+    private final List<Route> routes = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final boolean breadthFirst = search.equals("BOUNDARY") || search.equals("BUCKET");
+        final QueueType queueType = breadthFirst ? QueueType.valueOf(search) : QueueType.BOUNDARY;
+        final SearchAlgorithm searchAlgorithm = breadthFirst ? SearchAlgorithm.BREADTH_FIRST : SearchAlgorithm.valueOf(search);
+        Client client = mock(Client.class);
+        when(client.getGameState()).thenReturn(GameState.LOGGED_IN);
+        // PathfinderConfig.refreshTransports only runs on the client thread, which is the benchmark thread here
+        when(client.getClientThread()).thenReturn(Thread.currentThread());
+        when(client.getBoostedSkillLevel(any(Skill.class))).thenReturn(99);
+        // Quest.getState reads the quest status script result from the int stack; 2 means finished
+        when(client.getIntStack()).thenReturn(new int[]{2});
+
+        config = new PathfinderConfig(client, new BotConfig() {
+            @Override
+            public QueueType spQueueType() {
+                return queueType;
+            }
+
+            @Override
+            public SearchAlgorithm spSearchAlgorithm() {
+                return searchAlgorithm;
+            }
+
+            @Override
+            public int spNodeBudget() {
+                return nodeBudget;
+            }
+        });
+        config.refresh();
+
+        routes.clear();
+        for (Route route : loadRoutes()) {
+            if (route.category.equals(category)) {
+                routes.add(route);
+            }
+        }
+        if (routes.isEmpty()) {
+            throw new IllegalStateException("No benchmark routes in category " + category);
+        }
+    }
+
+    /** Reports the number of expanded nodes so JMH can derive nodes/sec from the throughput run */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class NodeCounter {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void runLatency(Blackhole blackhole) {
+        for (int i = 0; i < routes.size(); i++) {
+            blackhole.consume(runRoute(routes.get(i)).getPath());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void runThroughput(NodeCounter counter, Blackhole blackhole) {
+        for (int i = 0; i < routes.size(); i++) {
+            Pathfinder pathfinder = runRoute(routes.get(i));
+            counter.nodes += pathfinder.getStats().getTotalNodesChecked();
+            blackhole.consume(pathfinder.getPath());
+        }
+    }
+
+    private Pathfinder runRoute(Route route) {
+        Pathfinder pathfinder = new Pathfinder(config, route.start, route.targets);
+        pathfinder.run();
+        return pathfinder;
+    }
+
+    private static List<Route> loadRoutes() {
+        final String DELIM_COLUMN = "\t";
+        final String PREFIX_COMMENT = "#";
+
+        List<Route> routes = new ArrayList<>();
+        try {
+            String s = new String(Util.readAllBytes(PathfinderBenchmark.class.getResourceAsStream(ROUTES_PATH)), StandardCharsets.UTF_8);
+            Scanner scanner = new Scanner(s);
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+
+                if (line.startsWith(PREFIX_COMMENT) || line.isBlank()) {
+                    continue;
+                }
+
+                String[] fields = line.split(DELIM_COLUMN);
+                routes.add(new Route(fields[0], parsePoint(fields[1]), Collections.singleton(parsePoint(fields[2]))));
+            }
+            scanner.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return routes;
+    }
+
+    private static int parsePoint(String value) {
+        String[] point = value.split(" ");
+        return WorldPointUtil.packWorldPoint(
+            Integer.parseInt(point[0]),
+            Integer.parseInt(point[1]),
+            Integer.parseInt(point[2]));
+    }
+
+    private static class Route {
+        private final String category;
+        private final int start;
+        private final Set<Integer> targets;
+
+        private Route(String category, int start, Set<Integer> targets) {
+            this.category = category;
+            this.start = start;
+            this.targets = targets;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.runepal;
 
+import com.runepal.shortestpath.QueueType;
+import com.runepal.shortestpath.SearchAlgorithm;
 import com.runepal.shortestpath.TeleportationItem;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
@@ -949,4 +951,48 @@ public interface BotConfig extends Config
 	default int spCalculationCutoff() {
 		return 5;
 	}
-} 
\ No newline at end of file
+
+	@ConfigItem(
+			keyName = "spNodeBudget",
+			name = "Calculation node budget",
+			description = "Stops the calculation after this many tiles are checked without progress towards the path target, instead of after the time cutoff, so it ends in the same place however busy the computer is (0 to use the time cutoff)",
+			position = 27,
+			section = shortestPathSection
+	)
+	default int spNodeBudget() {
+		return 0;
+	}
+
+	@ConfigItem(
+			keyName = "spQueueType",
+			name = "Search queue",
+			description = "The frontier used by the pathfinder. Bucket orders walking and transport nodes together by cost with O(1) operations",
+			position = 28,
+			section = shortestPathSection
+	)
+	default QueueType spQueueType() {
+		return QueueType.BOUNDARY;
+	}
+
+	@ConfigItem(
+			keyName = "spSearchAlgorithm",
+			name = "Search algorithm",
+			description = "Breadth-first explores outwards from the player. A* is guided towards the target by a transport-aware lower bound and still finds the shortest path. Hierarchical plans over region entrances and transports first, which is faster on long routes but not always shortest. Bidirectional also searches back from the target on a second thread",
+			position = 29,
+			section = shortestPathSection
+	)
+	default SearchAlgorithm spSearchAlgorithm() {
+		return SearchAlgorithm.BREADTH_FIRST;
+	}
+
+	@ConfigItem(
+			keyName = "spCollisionCacheSize",
+			name = "Collision cache (MB)",
+			description = "Memory for decoded collision regions, only used when the collision map cannot be extracted to the RuneLite cache directory. Takes effect after a restart",
+			position = 30,
+			section = shortestPathSection
+	)
+	default int spCollisionCacheSize() {
+		return 8;
+	}
+}
@@ -8,9 +8,14 @@ import net.runelite.api.gameval.ItemID;
 import net.runelite.api.coords.WorldPoint;
 import net.runelite.api.events.GameTick;
 import net.runelite.api.gameval.InventoryID;
+import com.runepal.shortestpath.WorldPointUtil;
+import com.runepal.shortestpath.pathfinder.DistanceSearch;
 import com.runepal.shortestpath.pathfinder.PathfinderConfig;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 public class FishingTask implements BotTask {
@@ -45,6 +50,8 @@ public class FishingTask implements BotTask {
     private static final WorldPoint LUMBRIDGE_KITCHEN_RANGE = new WorldPoint(3211, 3215, 0);
     // Barbarian village fishing spot (fly fishing)
     private static final WorldPoint BARBARIAN_VILLAGE = new WorldPoint(3109, 3433, 0);
+    // The banks within reach of the fishing areas, of which the cheapest to get to is used
+    private static final Banks[] NEARBY_BANKS = {Banks.LUMBRIDGE, Banks.VARROCK_WEST, Banks.VARROCK_EAST};
 
     // Fishing spot and range object IDs
     private static final int NET_FISHING_SPOT_ID = 1530;
@@ -68,6 +75,9 @@ public class FishingTask implements BotTask {
     private GameObject cookingRange = null;
     private boolean fishingStarted = false;
     private boolean cookingStarted = false;
+    // The bank chosen by bankSearch, or null until it is done
+    private WorldPoint chosenBank = null;
+    private CompletableFuture<List<DistanceSearch.TargetDistance>> bankSearch = null;
 
     public FishingTask(RunepalPlugin plugin, BotConfig config, TaskManager taskManager, 
                       PathfinderConfig pathfinderConfig, ActionService actionService, 
@@ -85,6 +95,7 @@ public class FishingTask implements BotTask {
     @Override
     public void onStart() {
         log.info("Starting Fishing Task.");
+        plugin.getPathfindingService().registerHub(WorldPointUtil.packWorldPoint(LUMBRIDGE_SWAMP_FISHING));
         if (this.currentState == FishingState.WAITING_FOR_SUBTASK) {
             log.info("Returned from subtask. Determining next step.");
         } else {
@@ -100,6 +111,10 @@ public class FishingTask implements BotTask {
         log.info("Stopping Fishing Task.");
         this.fishingSpot = null;
         this.cookingRange = null;
+        if (bankSearch != null && !bankSearch.isDone()) {
+            bankSearch.cancel(false);
+            bankSearch = null;
+        }
         this.eventService.unsubscribe(GameTick.class, this::onGameTick);
         this.eventService.unsubscribe(InteractionCompletedEvent.class, this::onInteractionCompleted);
     }
@@ -396,7 +411,10 @@ public class FishingTask implements BotTask {
 
     private void doWalkingToBank() {
         WorldPoint playerLocation = gameService.getPlayerLocation();
-        WorldPoint bankLocation = getBankLocation();
+        WorldPoint bankLocation = chooseBank(playerLocation);
+        if (bankLocation == null) {
+            return; // Still comparing the banks
+        }
         if (playerLocation.distanceTo(bankLocation) <= 5) {
             log.info("Arrived at bank");
             currentState = FishingState.DEPOSITING;
@@ -510,6 +528,40 @@ public class FishingTask implements BotTask {
         }
     }
 
+    /**
+     * The nearby bank that is cheapest to reach from the player, found the first time the task banks with one
+     * search to all of them, and kept for the rest of the task. Null while that search runs. Falls back to the
+     * usual bank of the fishing area if none of them can be reached.
+     */
+    private WorldPoint chooseBank(WorldPoint playerLocation) {
+        if (chosenBank != null) {
+            return chosenBank;
+        }
+        if (bankSearch == null) {
+            Set<Integer> banks = new HashSet<>();
+            for (Banks bank : NEARBY_BANKS) {
+                banks.add(WorldPointUtil.packWorldPoint(bank.getBankCoordinates()));
+            }
+            log.info("Finding the nearest bank");
+            bankSearch = plugin.getPathfindingService().findDistances(WorldPointUtil.packWorldPoint(playerLocation), banks);
+            return null;
+        }
+        if (!bankSearch.isDone()) {
+            return null;
+        }
+
+        List<DistanceSearch.TargetDistance> distances;
+        try {
+            distances = bankSearch.join();
+        } catch (CancellationException | CompletionException e) {
+            log.warn("Finding the nearest bank did not complete", e);
+            distances = Collections.emptyList();
+        }
+        chosenBank = distances.isEmpty() ? getBankLocation() : WorldPointUtil.unpackWorldPoint(distances.get(0).getTarget());
+        log.info("Banking at {}", chosenBank);
+        return chosenBank;
+    }
+
     private WorldPoint getBankLocation() {
         switch (config.fishingArea()) {
             case LUMBRIDGE_SWAMP:
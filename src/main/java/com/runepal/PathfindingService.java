@@ -0,0 +1,356 @@
+package com.runepal;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import com.runepal.shortestpath.WorldPointUtil;
+import com.runepal.shortestpath.pathfinder.DistanceSearch;
+import com.runepal.shortestpath.pathfinder.Pathfinder;
+import com.runepal.shortestpath.pathfinder.PathfinderConfig;
+import com.runepal.shortestpath.pathfinder.Replanner;
+import com.runepal.shortestpath.pathfinder.TransportTable;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs path searches for every task of the plugin on one shared worker thread.
+ * Identical requests (same start, targets and config version) that are still running share one search,
+ * and a new request from the same owner supersedes its previous one, which is cancelled once no other
+ * owner is waiting for it. Complete paths are kept in a small LRU cache, so trips that are walked over and
+ * over, such as from a bank to a resource, are only searched once per config version.
+ */
+@Slf4j
+public class PathfindingService {
+    private static final int CACHE_SIZE = 64;
+
+    private final PathfinderConfig pathfinderConfig;
+    // A single worker, so searches run one at a time and reuse the node pools and visited tiles of its thread
+    private final ExecutorService executor;
+
+    // Guarded by this
+    private final Map<Request, Search> inFlight = new HashMap<>();
+    private final Map<Object, Request> requestsByOwner = new HashMap<>();
+    private final Map<Request, List<Integer>> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Request, List<Integer>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private int cacheVersion;
+    // The config version the distance fields were last brought up to date for, or -1 once a hub is registered
+    private int fieldsVersion = -1;
+
+    public PathfindingService(PathfinderConfig pathfinderConfig) {
+        this.pathfinderConfig = pathfinderConfig;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("pathfinder-%d").build());
+    }
+
+    /**
+     * Finds a path from start to the closest of the targets, with the config as of its last refresh.
+     * Cancelling the returned future does not stop the search; use {@link #cancel(Object)} for that.
+     *
+     * @param owner identifies the requester, usually the task, so its next request can supersede this one
+     * @return the packed path, empty if no path was found
+     */
+    public synchronized CompletableFuture<List<Integer>> findPath(Object owner, int start, Set<Integer> targets) {
+        final Request request = new Request(start, targets, pathfinderConfig.getVersion());
+        final Request previous = requestsByOwner.put(owner, request);
+        if (previous != null && !previous.equals(request)) {
+            release(owner, previous);
+        }
+
+        final List<Integer> cached = getCachedPath(request);
+        if (cached != null) {
+            requestsByOwner.remove(owner);
+            return CompletableFuture.completedFuture(cached);
+        }
+        Search search = inFlight.get(request);
+        if (search == null) {
+            search = new Search(request);
+            inFlight.put(request, search);
+            executor.execute(search);
+        } else {
+            log.debug("Joining the search in progress from {} to {}", start, targets);
+        }
+        search.owners.add(owner);
+        // After the search, which does not wait for fields it could not have used yet
+        updateDistanceFields(request.configVersion);
+        return search.future.copy();
+    }
+
+    /**
+     * Registers a place that is walked to over and over, such as a bank, so paths to it are found by descending
+     * its distance field instead of searching. The field is loaded or built on the worker once the config is
+     * refreshed, and kept in the RuneLite cache directory for the next session.
+     */
+    public synchronized void registerHub(int hub) {
+        pathfinderConfig.getDistanceFields().register(hub);
+        fieldsVersion = -1;
+    }
+
+    /**
+     * The path published so far by the search of the owner's last request, see {@link Pathfinder#getPartialPath()}.
+     * Null if the search has published nothing yet or is no longer running, such as when it was served from the cache.
+     */
+    public synchronized Pathfinder.PartialPath getPartialPath(Object owner) {
+        final Request request = requestsByOwner.get(owner);
+        final Search search = request != null ? inFlight.get(request) : null;
+        return search != null ? search.pathfinder.getPartialPath() : null;
+    }
+
+    /**
+     * Finds the cost and path from the start to every one of the targets with a single search, cheapest first,
+     * to choose between destinations such as banks. Cancelling the returned future stops the search.
+     *
+     * @return the reached targets, empty if none could be reached
+     */
+    public CompletableFuture<List<DistanceSearch.TargetDistance>> findDistances(int start, Set<Integer> targets) {
+        final DistanceSearch search = new DistanceSearch(pathfinderConfig, start, targets);
+        final CompletableFuture<List<DistanceSearch.TargetDistance>> future = new CompletableFuture<>();
+        future.whenComplete((distances, e) -> {
+            if (future.isCancelled()) {
+                search.cancel();
+            }
+        });
+        executor.execute(() -> {
+            if (future.isDone()) {
+                return; // Cancelled while queued
+            }
+            try {
+                search.run();
+            } catch (RuntimeException e) {
+                log.warn("Distance search from {} to {} targets failed", start, targets.size(), e);
+                future.completeExceptionally(e);
+                return;
+            }
+            if (search.isDone()) {
+                future.complete(search.getDistances());
+            } else {
+                future.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Creates a replanner towards the targets for {@link #repairPath}. It holds its search tree until it is dropped,
+     * so it should only be created once a path needs repairing and dropped once the walk is over.
+     */
+    public Replanner createReplanner(Set<Integer> targets) {
+        return new Replanner(pathfinderConfig, targets);
+    }
+
+    /**
+     * Repairs a path with the replanner on the worker, after the searches queued before it. Unless blockedFrom is
+     * {@link WorldPointUtil#UNDEFINED}, the move from it to blockedTo is forbidden first. Cancelling the returned
+     * future stops the repair, after which the replanner cannot be used again.
+     *
+     * @return the packed path from the start, empty if the replanner found none
+     */
+    public CompletableFuture<List<Integer>> repairPath(Replanner replanner, int start, int blockedFrom, int blockedTo) {
+        final CompletableFuture<List<Integer>> future = new CompletableFuture<>();
+        future.whenComplete((path, e) -> {
+            if (future.isCancelled()) {
+                replanner.cancel();
+            }
+        });
+        executor.execute(() -> {
+            if (future.isDone()) {
+                return; // Cancelled while queued
+            }
+            final List<Integer> path;
+            try {
+                if (blockedFrom != WorldPointUtil.UNDEFINED) {
+                    replanner.block(blockedFrom, blockedTo);
+                }
+                path = replanner.findPath(start);
+            } catch (RuntimeException e) {
+                log.warn("Repairing the path from {} failed", start, e);
+                future.completeExceptionally(e);
+                return;
+            }
+            future.complete(path);
+        });
+        return future;
+    }
+
+    /** Cancels the search of the owner's last request unless another owner is still waiting for it */
+    public synchronized void cancel(Object owner) {
+        final Request request = requestsByOwner.remove(owner);
+        if (request != null) {
+            release(owner, request);
+        }
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            for (Search search : inFlight.values()) {
+                search.cancel();
+            }
+            inFlight.clear();
+            requestsByOwner.clear();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Looks for a cached path to the same targets that starts at, or passes through, the start of the request.
+     * Paths cached with an older config version are dropped, since the usable transports or settings changed.
+     */
+    private List<Integer> getCachedPath(Request request) {
+        if (cacheVersion != request.configVersion) {
+            cache.clear();
+            cacheVersion = request.configVersion;
+            return null;
+        }
+
+        final List<Integer> path = cache.get(request);
+        if (path != null) {
+            return path;
+        }
+        for (Map.Entry<Request, List<Integer>> entry : cache.entrySet()) {
+            if (entry.getKey().targets.equals(request.targets)) {
+                final int index = entry.getValue().indexOf(request.start);
+                if (index >= 0) {
+                    // The rest of a path being walked, which skips any teleport the new start could have used
+                    return List.copyOf(entry.getValue().subList(index, entry.getValue().size()));
+                }
+            }
+        }
+        return null;
+    }
+
+    private void updateDistanceFields(int configVersion) {
+        if (fieldsVersion == configVersion) {
+            return;
+        }
+        fieldsVersion = configVersion;
+        final TransportTable transports = pathfinderConfig.getTransportTable();
+        executor.execute(() -> {
+            try {
+                pathfinderConfig.getDistanceFields().update(transports);
+            } catch (RuntimeException e) {
+                log.warn("Updating the distance fields failed", e);
+            }
+        });
+    }
+
+    private synchronized void cachePath(Request request, List<Integer> path) {
+        if (request.configVersion == cacheVersion && !path.isEmpty() && request.targets.contains(path.get(path.size() - 1))) {
+            cache.put(request, List.copyOf(path));
+        }
+    }
+
+    private void release(Object owner, Request request) {
+        final Search search = inFlight.get(request);
+        if (search == null) {
+            return;
+        }
+        search.owners.remove(owner);
+        if (search.owners.isEmpty()) {
+            log.debug("Cancelling superseded search from {} to {}", request.start, request.targets);
+            inFlight.remove(request);
+            search.cancel();
+        }
+    }
+
+    private synchronized void finish(Search search) {
+        if (inFlight.get(search.request) == search) {
+            inFlight.remove(search.request);
+        }
+        for (Object owner : search.owners) {
+            requestsByOwner.remove(owner, search.request);
+        }
+    }
+
+    private static class Request {
+        private final int start;
+        private final Set<Integer> targets;
+        private final int configVersion;
+
+        Request(int start, Set<Integer> targets, int configVersion) {
+            this.start = start;
+            this.targets = Set.copyOf(targets);
+            this.configVersion = configVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Request)) {
+                return false;
+            }
+            Request other = (Request) o;
+            return start == other.start && configVersion == other.configVersion && targets.equals(other.targets);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, targets, configVersion);
+        }
+    }
+
+    private class Search implements Runnable {
+        private final Request request;
+        private final Pathfinder pathfinder;
+        // Of the config version of the request, like the pathfinder's
+        private final TransportTable transports;
+        private final CompletableFuture<List<Integer>> future = new CompletableFuture<>();
+        // Guarded by the service
+        private final Set<Object> owners = new HashSet<>();
+
+        Search(Request request) {
+            this.request = request;
+            this.pathfinder = new Pathfinder(pathfinderConfig, request.start, request.targets);
+            this.transports = pathfinderConfig.getTransportTable();
+        }
+
+        void cancel() {
+            pathfinder.cancel();
+            future.cancel(false);
+        }
+
+        // The path down the distance field of the target if it is a hub, which is found without searching
+        private List<Integer> descend() {
+            if (request.targets.size() != 1) {
+                return null;
+            }
+            return pathfinderConfig.getDistanceFields().findPath(request.start, request.targets.iterator().next(),
+                pathfinderConfig, transports);
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                return; // Cancelled while queued
+            }
+            try {
+                final List<Integer> descended = descend();
+                if (descended != null) {
+                    log.debug("Descended the distance field from {} to {}", request.start, request.targets);
+                    finish(this);
+                    cachePath(request, descended);
+                    future.complete(descended);
+                    return;
+                }
+                pathfinder.run();
+            } catch (RuntimeException e) {
+                log.warn("Path search from {} to {} failed", request.start, request.targets, e);
+                finish(this);
+                future.completeExceptionally(e);
+                return;
+            }
+            finish(this);
+            if (pathfinder.isDone()) {
+                cachePath(request, pathfinder.getPath());
+                future.complete(pathfinder.getPath());
+            } else {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -30,6 +30,7 @@ import net.runelite.client.util.ImageUtil;
 
 import java.awt.image.BufferedImage;
 import net.runelite.client.ui.overlay.OverlayManager;
+import com.runepal.shortestpath.WorldPointUtil;
 import com.runepal.shortestpath.pathfinder.PathfinderConfig;
 import net.runelite.api.coords.WorldPoint;
 
@@ -51,6 +52,8 @@ public class RunepalPlugin extends Plugin {
 	private final TaskManager taskManager = new TaskManager();
 	private PathfinderConfig pathfinderConfig;
 	@Getter
+	private PathfindingService pathfindingService = null;
+	@Getter
 	private ActionService actionService = null;
 	@Getter
 	private GameService gameService = null;
@@ -160,6 +163,10 @@ public class RunepalPlugin extends Plugin {
 		supplyManager = new SupplyManager(client, gameService, potionService, config);
 
 		pathfinderConfig = new PathfinderConfig(client, config);
+		pathfindingService = new PathfindingService(pathfinderConfig);
+		for (Banks bank : Banks.values()) {
+			pathfindingService.registerHub(WorldPointUtil.packWorldPoint(bank.getBankCoordinates()));
+		}
 
 		log.info("Runepal initialized with RemoteInput.");
 	}
@@ -185,6 +192,9 @@ public class RunepalPlugin extends Plugin {
 		if (prayerService != null) {
 			prayerService.shutdown();
 		}
+		if (pathfindingService != null) {
+			pathfindingService.shutdown();
+		}
 
 		// Disconnect RemoteInput
 		if (remoteInputService != null) {
@@ -194,6 +204,9 @@ public class RunepalPlugin extends Plugin {
 
 	@Subscribe
 	public void onGameStateChanged(GameStateChanged gameStateChanged) {
+		if (pathfinderConfig != null) {
+			pathfinderConfig.onGameStateChanged(gameStateChanged);
+		}
 		if (gameStateChanged.getGameState() == GameState.LOGGED_IN) {
 			log.info("Runepal is running - player logged in.");
 		} else if (gameStateChanged.getGameState() == GameState.LOGIN_SCREEN) {
@@ -221,11 +234,35 @@ public class RunepalPlugin extends Plugin {
 
 	@Subscribe
 	public void onStatChanged(StatChanged statChanged) {
+		if (pathfinderConfig != null) {
+			pathfinderConfig.onStatChanged(statChanged);
+		}
 		if (eventService != null) {
 			eventService.publish(statChanged);
 		}
 	}
 
+	@Subscribe
+	public void onItemContainerChanged(ItemContainerChanged itemContainerChanged) {
+		if (pathfinderConfig != null) {
+			pathfinderConfig.onItemContainerChanged(itemContainerChanged);
+		}
+	}
+
+	@Subscribe
+	public void onVarbitChanged(VarbitChanged varbitChanged) {
+		if (pathfinderConfig != null) {
+			pathfinderConfig.onVarbitChanged(varbitChanged);
+		}
+	}
+
+	@Subscribe
+	public void onWidgetLoaded(WidgetLoaded widgetLoaded) {
+		if (pathfinderConfig != null) {
+			pathfinderConfig.onWidgetLoaded(widgetLoaded);
+		}
+	}
+
 	@Subscribe
 	public void onInteractingChanged(InteractingChanged interactingChanged) {
 		if (eventService != null) {
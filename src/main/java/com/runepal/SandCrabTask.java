@@ -27,6 +27,7 @@ import java.util.function.Consumer;
 
 import com.runepal.entity.Interactable;
 import com.runepal.entity.NpcEntity;
+import com.runepal.shortestpath.WorldPointUtil;
 import com.runepal.shortestpath.pathfinder.PathfinderConfig;
 
 @Slf4j
@@ -290,6 +291,8 @@ public class SandCrabTask implements BotTask {
         // Select optimal crab spot based on configuration
         this.currentSpot = selectOptimalCrabSpot();
         log.debug("Selected crab spot: {}", currentSpot.getDescription());
+        plugin.getPathfindingService().registerHub(WorldPointUtil.packWorldPoint(currentSpot.getCombatPoint()));
+        plugin.getPathfindingService().registerHub(WorldPointUtil.packWorldPoint(currentSpot.getResetPoint()));
         
         // Initialize aggression timer
         this.lastAggressionResetTime = System.currentTimeMillis();
@@ -1,6 +1,5 @@
 package com.runepal;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
@@ -12,6 +11,7 @@ import net.runelite.api.widgets.Widget;
 import com.runepal.shortestpath.WorldPointUtil;
 import com.runepal.shortestpath.pathfinder.Pathfinder;
 import com.runepal.shortestpath.pathfinder.PathfinderConfig;
+import com.runepal.shortestpath.pathfinder.Replanner;
 import com.runepal.shortestpath.Transport;
 
 import java.util.*;
@@ -34,6 +34,10 @@ public class WalkTask implements BotTask {
     }
 
     private static final int RETRY_LIMIT = 5;
+    // How often a door is tried before the path is repaired around it
+    private static final int DOOR_ATTEMPT_LIMIT = 3;
+    // How far the player may be from the path ahead before it is repaired from where the player is
+    private static final int OFF_ROUTE_DISTANCE = 8;
 
     @Getter
     private final WorldPoint destination;
@@ -48,9 +52,23 @@ public class WalkTask implements BotTask {
     private List<WorldPoint> path;
     private final List<WorldPoint> transportPoints = new ArrayList<>();
     private final List<Transport> transportsInPath = new ArrayList<>();;
-    private Pathfinder pathfinder;
-    private Future<?> pathfinderFuture;
-    private final ExecutorService pathfinderExecutor;
+    private CompletableFuture<List<Integer>> pathFuture;
+    // Whether pathFuture is a repair by the replanner rather than a search
+    private boolean repairing;
+    // The path last published by the running search, and the index in it the player was last sent to
+    private List<Integer> partialPath = Collections.emptyList();
+    private int partialPathVersion;
+    private int partialPathIndex;
+    // Repairs the path when the player leaves it or a door on it cannot be opened, see repairPath()
+    private Replanner replanner;
+    // The door move that could not be opened, passed to the next repair
+    private int blockedFrom = WorldPointUtil.UNDEFINED;
+    private int blockedTo = WorldPointUtil.UNDEFINED;
+    // The door move being opened and how often it has been tried while it still blocks the path
+    private int doorFrom = WorldPointUtil.UNDEFINED;
+    private int doorTo = WorldPointUtil.UNDEFINED;
+    private int doorAttempts;
+    private final PathfindingService pathfindingService;
     private final ScheduledExecutorService scheduler;
     private final ActionService actionService;
     
@@ -68,8 +86,7 @@ public class WalkTask implements BotTask {
         this.destination = destination;
         this.gameService = gameService;
         this.humanizerService = humanizerService;
-        ThreadFactory shortestPathNaming = new ThreadFactoryBuilder().setNameFormat("walk-task-%d").build();
-        this.pathfinderExecutor = Executors.newSingleThreadExecutor(shortestPathNaming);
+        this.pathfindingService = plugin.getPathfindingService();
         this.scheduler = Executors.newSingleThreadScheduledExecutor();
         this.actionService = actionService;
     }
@@ -155,18 +172,43 @@ public class WalkTask implements BotTask {
         int endPacked = WorldPointUtil.packWorldPoint(destination);
 
         pathfinderConfig.refresh();
-        pathfinder = new Pathfinder(pathfinderConfig, startPacked, Collections.singleton(endPacked));
-        pathfinderFuture = pathfinderExecutor.submit(pathfinder);
+        partialPath = Collections.emptyList();
+        partialPathVersion = 0;
+        partialPathIndex = 0;
+        repairing = false;
+        pathFuture = pathfindingService.findPath(this, startPacked, Collections.singleton(endPacked));
         currentState = WalkState.CALCULATING_PATH;
     }
 
     private void checkPathCalculation() {
-        if (pathfinder == null || !pathfinder.isDone()) {
+        if (pathFuture == null) {
+            return;
+        }
+        if (!pathFuture.isDone()) {
+            walkPartialPath();
             return;
         }
 
-        List<Integer> resultPath = pathfinder.getPath();
+        List<Integer> resultPath;
+        try {
+            resultPath = pathFuture.join();
+        } catch (CancellationException | CompletionException e) {
+            if (repairing) {
+                log.warn("Path repair to {} did not complete, recalculating", destination, e);
+                cancelReplanner();
+                currentState = WalkState.IDLE;
+                return;
+            }
+            log.warn("Path calculation to {} did not complete", destination, e);
+            currentState = WalkState.FAILED;
+            return;
+        }
         if (resultPath.isEmpty()) {
+            if (repairing) {
+                log.info("Could not repair the path to {}, recalculating", destination);
+                currentState = WalkState.IDLE;
+                return;
+            }
             log.warn("No path found to {}", destination);
             currentState = WalkState.FAILED;
             return;
@@ -176,11 +218,61 @@ public class WalkTask implements BotTask {
                 .map(WorldPointUtil::unpackWorldPoint)
                 .collect(Collectors.toList());
 
+        transportPoints.clear();
+        transportsInPath.clear();
         getAllTransportPointsInPath(this.path);
-        
-        log.info("Path calculated with {} steps.", this.path.size());
+
+        log.info("Path {} with {} steps.", repairing ? "repaired" : "calculated", this.path.size());
         currentState = WalkState.WALKING;
         pathIndex = 0;
+        if (partialPathIndex > 0) {
+            // Continue from wherever walking the partial path got to
+            WorldPoint currentLocation = gameService.getPlayerLocation();
+            int closestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < Math.min(partialPathIndex + 15, this.path.size()); i++) {
+                int distance = this.path.get(i).distanceTo(currentLocation);
+                if (distance < closestDistance) {
+                    closestDistance = distance;
+                    pathIndex = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts walking while a long search is still running, along the path to the closest tile it found so far.
+     * Only walks the part that two consecutive published paths agree on, up to its first transport, so the
+     * player rarely walks a way the final path does not take.
+     */
+    private void walkPartialPath() {
+        Pathfinder.PartialPath published = pathfindingService.getPartialPath(this);
+        if (published == null || published.isComplete() || published.getVersion() == partialPathVersion) {
+            return;
+        }
+        List<Integer> previous = partialPath;
+        partialPath = published.getPath();
+        partialPathVersion = published.getVersion();
+        if (client.getLocalDestinationLocation() != null) {
+            return;
+        }
+
+        int stable = 0;
+        while (stable < previous.size() && stable < partialPath.size()
+                && previous.get(stable).equals(partialPath.get(stable))
+                && (stable == 0 || WorldPointUtil.distanceBetween(partialPath.get(stable - 1), partialPath.get(stable)) <= 1)) {
+            stable++;
+        }
+
+        // Click the furthest agreed point on the minimap that is further along than the last one clicked
+        for (int i = stable - 1; i > partialPathIndex; i--) {
+            WorldPoint point = WorldPointUtil.unpackWorldPoint(partialPath.get(i));
+            if (isPointOnMinimap(point)) {
+                log.debug("Walking to {} while the path is being calculated", point);
+                walkTo(point);
+                partialPathIndex = i;
+                return;
+            }
+        }
     }
 
     private void handleWalking() {
@@ -194,12 +286,13 @@ public class WalkTask implements BotTask {
         // Check if we're already at the destination, or not at destination after reaching end of path
         if (currentLocation.equals(destination)) {
             log.info("Already at destination.");
+            cancelReplanner();
             currentState = WalkState.FINISHED;
             return;
         }
         if (pathIndex >= path.size()) {
-            log.warn("Reached end of path but not at destination. Recalculating...");
-            currentState = WalkState.IDLE;
+            log.warn("Reached end of path but not at destination. Repairing...");
+            repairPath(currentLocation);
             return;
         }
 
@@ -207,6 +300,11 @@ public class WalkTask implements BotTask {
         log.debug("DEBUG: Before updatePathIndex - pathIndex: {}, currentLocation: {}", pathIndex, currentLocation);
         updatePathIndex(currentLocation);
         log.debug("DEBUG: After updatePathIndex - pathIndex: {}", pathIndex);
+        if (distanceToPathAhead(currentLocation) > OFF_ROUTE_DISTANCE) {
+            log.warn("Left the path at {}. Repairing...", currentLocation);
+            repairPath(currentLocation);
+            return;
+        }
 
         transportToUse = findTransportInPath(currentLocation);
         if (transportToUse != null) {
@@ -231,7 +329,12 @@ public class WalkTask implements BotTask {
         log.info("Current location: {}", currentLocation);
         log.info("pathIndex location: {}", path.get(pathIndex));
         DoorInfo doorInfo = findDoorBlockingPath(currentLocation);
-        if (doorInfo != null) {
+        if (doorInfo == null) {
+            // Any door tried before has been opened and walked through
+            doorFrom = WorldPointUtil.UNDEFINED;
+            doorTo = WorldPointUtil.UNDEFINED;
+            doorAttempts = 0;
+        } else {
             log.info("Door detected at {} blocking path to {}", doorInfo.doorLocation, doorInfo.targetLocation);
             
             // Walk to the door first if we're not adjacent
@@ -241,7 +344,24 @@ public class WalkTask implements BotTask {
                 return;
             }
             
-            // We're adjacent to the door, try to interact with it
+            // We're adjacent to the door; if it still blocks the path after a few tries, repair the path around it
+            int from = WorldPointUtil.packWorldPoint(doorInfo.lastUnblockedPoint);
+            int to = WorldPointUtil.packWorldPoint(doorInfo.doorLocation);
+            if (from != doorFrom || to != doorTo) {
+                doorFrom = from;
+                doorTo = to;
+                doorAttempts = 0;
+            }
+            if (++doorAttempts > DOOR_ATTEMPT_LIMIT) {
+                log.warn("Could not open the door at {}. Repairing path.", doorInfo.doorLocation);
+                blockedFrom = from;
+                blockedTo = to;
+                doorFrom = WorldPointUtil.UNDEFINED;
+                doorTo = WorldPointUtil.UNDEFINED;
+                doorAttempts = 0;
+                repairPath(currentLocation);
+                return;
+            }
             doorToOpen = findDoorObject(doorInfo.doorLocation);
             if ((doorToOpen != null && doorToOpen instanceof GameObject) || (doorToOpen != null && doorToOpen instanceof WallObject)) {
                 log.debug("Found door object {} at {}, attempting to open", doorToOpen.getId(), doorInfo.doorLocation);
@@ -538,6 +658,15 @@ public class WalkTask implements BotTask {
         }
     }
 
+    // The distance to the closest point of the path ahead that updatePathIndex looks at
+    private int distanceToPathAhead(WorldPoint currentLocation) {
+        int closestDistance = Integer.MAX_VALUE;
+        for (int i = pathIndex; i < Math.min(pathIndex + 15, path.size()); i++) {
+            closestDistance = Math.min(closestDistance, path.get(i).distanceTo(currentLocation));
+        }
+        return closestDistance;
+    }
+
     private WorldPoint getNextMinimapTarget() {
         WorldPoint currentLocation = gameService.getPlayerLocation();
         log.info("DEBUG: getNextMinimapTarget - pathIndex: {}, path.size(): {}, currentLocation: {}", pathIndex, path.size(), currentLocation);
@@ -622,10 +751,8 @@ public class WalkTask implements BotTask {
     @Override
     public void onStop() {
         log.info("Stopping enhanced walk task.");
-        if (pathfinderFuture != null && !pathfinderFuture.isDone()) {
-            pathfinderFuture.cancel(true);
-        }
-        pathfinderExecutor.shutdownNow();
+        pathfindingService.cancel(this);
+        cancelReplanner();
         scheduler.shutdownNow();
     }
 
@@ -668,22 +795,55 @@ public class WalkTask implements BotTask {
     }
 
     private void handleDoorOpening() {
-        if ((doorToOpen != null && doorToOpen instanceof GameObject) || (doorToOpen != null && doorToOpen instanceof WallObject)) {
-            if (doorToOpen instanceof GameObject) {
-                if (!actionService.isInteracting()) {
-                    actionService.interactWithGameObject((GameObject) doorToOpen, "Open");
-                    currentState = WalkState.INTERACTING_WITH_OBJECT;
-                }
-            // TODO: Handle wall objects similar to game objects
-            } else {
-                actionService.interactWithWallObject((WallObject) doorToOpen, "Open");
-                currentState = WalkState.WALKING;
-                delayTicks = humanizerService.getRandomDelay(0, 2);
+        // Only entered with a door object; a door that stays closed is found again by handleWalking
+        if (doorToOpen instanceof GameObject) {
+            if (!actionService.isInteracting()) {
+                actionService.interactWithGameObject((GameObject) doorToOpen, "Open");
+                currentState = WalkState.INTERACTING_WITH_OBJECT;
             }
+        // TODO: Handle wall objects similar to game objects
         } else {
-            log.warn("Could not open door. Recalculating path.");
-            currentState = WalkState.IDLE;
+            actionService.interactWithWallObject((WallObject) doorToOpen, "Open");
+            currentState = WalkState.WALKING;
+            delayTicks = humanizerService.getRandomDelay(0, 2);
+        }
+    }
+
+    /**
+     * Repairs the path from the current location on the pathfinding worker, avoiding the door that could not be
+     * opened if there is one. The replanner is created by the first repair of the walk, which searches about as
+     * long as calculating the path; later ones only search again around the player and the blocked doors. The
+     * result is picked up like a calculated path, and if there is none the path is calculated from scratch.
+     */
+    private void repairPath(WorldPoint currentLocation) {
+        pathfinderConfig.refresh();
+        int from = blockedFrom;
+        int to = blockedTo;
+        if (replanner != null && replanner.getConfigVersion() != pathfinderConfig.getVersion()) {
+            // Built with other transports or settings, so doors blocked before may be usable now
+            cancelReplanner();
+        }
+        if (replanner == null) {
+            replanner = pathfindingService.createReplanner(Collections.singleton(WorldPointUtil.packWorldPoint(destination)));
+        }
+        blockedFrom = WorldPointUtil.UNDEFINED;
+        blockedTo = WorldPointUtil.UNDEFINED;
+
+        partialPath = Collections.emptyList();
+        partialPathVersion = 0;
+        partialPathIndex = 0;
+        repairing = true;
+        pathFuture = pathfindingService.repairPath(replanner, WorldPointUtil.packWorldPoint(currentLocation), from, to);
+        currentState = WalkState.CALCULATING_PATH;
+    }
+
+    private void cancelReplanner() {
+        if (replanner != null) {
+            replanner.cancel();
+            replanner = null;
         }
+        blockedFrom = WorldPointUtil.UNDEFINED;
+        blockedTo = WorldPointUtil.UNDEFINED;
     }
 
 
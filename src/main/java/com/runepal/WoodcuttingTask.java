@@ -11,6 +11,7 @@ import net.runelite.api.events.AnimationChanged;
 import net.runelite.api.events.GameTick;
 import net.runelite.api.events.InteractingChanged;
 import net.runelite.api.events.StatChanged;
+import com.runepal.shortestpath.WorldPointUtil;
 import com.runepal.shortestpath.pathfinder.PathfinderConfig;
 
 import java.util.*;
@@ -81,6 +82,7 @@ public class WoodcuttingTask implements BotTask {
     @Override
     public void onStart() {
         log.info("Starting Woodcutting Task.");
+        plugin.getPathfindingService().registerHub(WorldPointUtil.packWorldPoint(VARROCK_EAST_TREES));
         this.lastWoodcuttingXp = plugin.getClient().getSkillExperience(Skill.WOODCUTTING);
         
         // Store event handler references to maintain identity
@@ -0,0 +1,19 @@
+package com.runepal.shortestpath;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/** The frontier implementation used by the pathfinder */
+@Getter
+@RequiredArgsConstructor
+public enum QueueType {
+    BOUNDARY("Boundary"),
+    BUCKET("Bucket");
+
+    private final String type;
+
+    @Override
+    public String toString() {
+        return type;
+    }
+}
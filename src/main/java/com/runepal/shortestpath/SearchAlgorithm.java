@@ -0,0 +1,25 @@
+package com.runepal.shortestpath;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/** How the pathfinder orders and closes the nodes it explores */
+@Getter
+@RequiredArgsConstructor
+public enum SearchAlgorithm {
+    /** Expands nodes by cost from the start, closing tiles when they are first discovered */
+    BREADTH_FIRST("Breadth-first"),
+    /** Expands nodes by cost plus an admissible lower bound to the targets, expanding a tile again if it is reached at a lower cost */
+    A_STAR("A*"),
+    /** Searches the graph of region entrances and transports first and only walks the regions along the way */
+    HIERARCHICAL("Hierarchical"),
+    /** Breadth-first from the start and back from the targets on two threads, until the two searches meet */
+    BIDIRECTIONAL("Bidirectional");
+
+    private final String type;
+
+    @Override
+    public String toString() {
+        return type;
+    }
+}
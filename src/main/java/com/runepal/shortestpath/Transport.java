@@ -1,5 +1,6 @@
 package com.runepal.shortestpath;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
@@ -27,6 +28,13 @@ public class Transport {
     private static final String DELIM_STATE = "=";
     private static final String DELIM_AND = "&";
     private static final String DELIM_OR = "|";
+    // Which optional fields follow a record of the transport index
+    private static final int INDEX_SKILLS = 1;
+    private static final int INDEX_QUESTS = 1 << 1;
+    private static final int INDEX_ITEMS = 1 << 2;
+    private static final int INDEX_VARBITS = 1 << 3;
+    private static final int INDEX_VARPLAYERS = 1 << 4;
+    private static final int INDEX_CONSUMABLE = 1 << 5;
 
     /** The starting point of this transport */
     @Getter
@@ -329,6 +337,132 @@ public class Transport {
         }
     }
 
+    /** Reads a transport from its record in the {@link TransportIndex} */
+    Transport(int origin, TransportIndex.Reader in) {
+        this.origin = origin;
+        this.destination = in.getInt();
+        this.type = TransportType.values()[in.getUnsignedByte()];
+        this.objectID = in.getInt();
+        this.menuOption = in.getString();
+        this.menuTarget = in.getString();
+        this.displayInfo = in.getString();
+        this.duration = in.getInt();
+        this.maxWildernessLevel = in.getByte();
+
+        final int fields = in.getUnsignedByte();
+        this.isConsumable = (fields & INDEX_CONSUMABLE) != 0;
+        if ((fields & INDEX_SKILLS) != 0) {
+            // One bit per skill of the index, followed by the levels of the set bits
+            for (long skills = in.getLong(); skills != 0; skills &= skills - 1) {
+                final int ordinal = in.getSkillOrdinal(Long.numberOfTrailingZeros(skills));
+                final int level = in.getUnsignedByte();
+                if (ordinal >= 0) {
+                    skillLevels[ordinal] = level;
+                }
+            }
+        }
+        if ((fields & INDEX_QUESTS) != 0) {
+            for (int i = in.getUnsignedByte(); i > 0; --i) {
+                final Quest quest = in.getQuest();
+                if (quest != null) {
+                    quests.add(quest);
+                }
+            }
+        }
+        if ((fields & INDEX_ITEMS) != 0) {
+            final int n = in.getUnsignedByte();
+            final int[][] items = new int[n][];
+            final int[][] staves = new int[n][];
+            final int[][] offhands = new int[n][];
+            final int[] quantities = new int[n];
+            for (int i = 0; i < n; ++i) {
+                quantities[i] = in.getInt();
+                items[i] = in.getIntArray();
+                staves[i] = in.getIntArray();
+                offhands[i] = in.getIntArray();
+            }
+            this.itemRequirements = new TransportItems(items, staves, offhands, quantities);
+        }
+        if ((fields & INDEX_VARBITS) != 0) {
+            for (int i = in.getUnsignedByte(); i > 0; --i) {
+                varbits.add(new TransportVarbit(in.getInt(), in.getInt(), TransportVarCheck.values()[in.getUnsignedByte()]));
+            }
+        }
+        if ((fields & INDEX_VARPLAYERS) != 0) {
+            for (int i = in.getUnsignedByte(); i > 0; --i) {
+                varPlayers.add(new TransportVarPlayer(in.getInt(), in.getInt(), TransportVarCheck.values()[in.getUnsignedByte()]));
+            }
+        }
+    }
+
+    /** Writes the record read by {@link #Transport(int, TransportIndex.Reader)}; the origin is written by the index */
+    void write(TransportIndex.Writer writer) throws IOException {
+        final DataOutputStream out = writer.out;
+        long skills = 0;
+        for (int i = 0; i < skillLevels.length; ++i) {
+            if (skillLevels[i] > 0) {
+                skills |= 1L << i;
+            }
+        }
+        final int fields = (skills != 0 ? INDEX_SKILLS : 0)
+            | (!quests.isEmpty() ? INDEX_QUESTS : 0)
+            | (itemRequirements != null ? INDEX_ITEMS : 0)
+            | (!varbits.isEmpty() ? INDEX_VARBITS : 0)
+            | (!varPlayers.isEmpty() ? INDEX_VARPLAYERS : 0)
+            | (isConsumable ? INDEX_CONSUMABLE : 0);
+
+        out.writeInt(destination);
+        out.writeByte(type.ordinal());
+        out.writeInt(objectID);
+        writer.putString(menuOption);
+        writer.putString(menuTarget);
+        writer.putString(displayInfo);
+        out.writeInt(duration);
+        out.writeByte(maxWildernessLevel);
+        out.writeByte(fields);
+
+        if (skills != 0) {
+            out.writeLong(skills);
+            for (int i = 0; i < skillLevels.length; ++i) {
+                if (skillLevels[i] > 0) {
+                    out.writeByte(skillLevels[i]);
+                }
+            }
+        }
+        if (!quests.isEmpty()) {
+            out.writeByte(quests.size());
+            for (Quest quest : quests) {
+                writer.putString(quest.getName());
+            }
+        }
+        if (itemRequirements != null) {
+            final int[] quantities = itemRequirements.getQuantities();
+            out.writeByte(quantities.length);
+            for (int i = 0; i < quantities.length; ++i) {
+                out.writeInt(quantities[i]);
+                writer.putIntArray(itemRequirements.getItems()[i]);
+                writer.putIntArray(itemRequirements.getStaves()[i]);
+                writer.putIntArray(itemRequirements.getOffhands()[i]);
+            }
+        }
+        if (!varbits.isEmpty()) {
+            out.writeByte(varbits.size());
+            for (TransportVarbit varbit : varbits) {
+                out.writeInt(varbit.getId());
+                out.writeInt(varbit.getValue());
+                out.writeByte(varbit.getCheck().ordinal());
+            }
+        }
+        if (!varPlayers.isEmpty()) {
+            out.writeByte(varPlayers.size());
+            for (TransportVarPlayer varPlayer : varPlayers) {
+                out.writeInt(varPlayer.getId());
+                out.writeInt(varPlayer.getValue());
+                out.writeByte(varPlayer.getCheck().ordinal());
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return ("(" +
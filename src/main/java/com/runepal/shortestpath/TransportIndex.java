@@ -0,0 +1,273 @@
+package com.runepal.shortestpath;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Quest;
+import net.runelite.api.Skill;
+
+/**
+ * The transports and destinations compiled from the TSV resources by TransportIndexGenerator at build time.
+ * Loading it is one bulk read followed by a pass over fixed fields, instead of splitting every TSV line into
+ * a field map. Strings are interned in a table, and skills and quests are stored by name so the index stays
+ * valid when the client adds skills or quests. When the plugin runs from the sources without the index, the
+ * TSVs are parsed instead.
+ */
+@Slf4j
+public class TransportIndex {
+    static final String RESOURCE_PATH = "/transports.bin";
+    static final int VERSION = 1;
+
+    @Getter
+    private final Map<Integer, Set<Transport>> transports;
+    @Getter
+    private final Map<String, Set<Integer>> destinations;
+
+    TransportIndex(Map<Integer, Set<Transport>> transports, Map<String, Set<Integer>> destinations) {
+        this.transports = transports;
+        this.destinations = destinations;
+    }
+
+    /** Loads the compiled index, or parses the TSVs if it is missing or unreadable */
+    public static TransportIndex fromResources() {
+        final TransportIndex index = read();
+        if (index != null) {
+            return index;
+        }
+        return new TransportIndex(Transport.loadAllFromResources(), Destination.loadAllFromResources());
+    }
+
+    private static TransportIndex read() {
+        final InputStream resource = TransportIndex.class.getResourceAsStream(RESOURCE_PATH);
+        if (resource == null) {
+            log.debug("Missing {}, parsing the transport TSVs", RESOURCE_PATH);
+            return null;
+        }
+
+        try (InputStream in = resource) {
+            final TransportIndex index = read(Util.readAllBytes(in));
+            if (index == null) {
+                log.warn("{} has an unknown version, parsing the transport TSVs", RESOURCE_PATH);
+            }
+            return index;
+        } catch (IOException | BufferUnderflowException e) {
+            log.warn("Unable to read " + RESOURCE_PATH + ", parsing the transport TSVs", e);
+            return null;
+        }
+    }
+
+    /** Reads an index written by {@link #write(DataOutputStream)}, or returns null if it is of another version */
+    static TransportIndex read(byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt() != VERSION) {
+            return null;
+        }
+        final Reader reader = new Reader(buffer);
+
+        final int originCount = buffer.getInt();
+        final Map<Integer, Set<Transport>> transports = new HashMap<>(originCount * 4 / 3 + 1);
+        for (int i = 0; i < originCount; ++i) {
+            final int origin = buffer.getInt();
+            final int count = buffer.getInt();
+            final Set<Transport> originTransports = new HashSet<>(count * 4 / 3 + 1);
+            for (int j = 0; j < count; ++j) {
+                originTransports.add(new Transport(origin, reader));
+            }
+            transports.put(origin, originTransports);
+        }
+
+        final int entryCount = buffer.getInt();
+        final Map<String, Set<Integer>> destinations = new HashMap<>(entryCount * 4 / 3 + 1);
+        for (int i = 0; i < entryCount; ++i) {
+            final String entry = reader.getString();
+            final int[] points = reader.getIntArray();
+            final Set<Integer> entryDestinations = new HashSet<>(points.length * 4 / 3 + 1);
+            for (int point : points) {
+                entryDestinations.add(point);
+            }
+            destinations.put(entry, entryDestinations);
+        }
+
+        return new TransportIndex(transports, destinations);
+    }
+
+    /** Writes the index in the format read by {@link #fromResources()} */
+    void write(DataOutputStream out) throws IOException {
+        // The records are written first, so the string table they intern into is complete
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final Writer writer = new Writer(new DataOutputStream(body));
+
+        writer.out.writeInt(transports.size());
+        for (Map.Entry<Integer, Set<Transport>> entry : transports.entrySet()) {
+            writer.out.writeInt(entry.getKey());
+            writer.out.writeInt(entry.getValue().size());
+            for (Transport transport : entry.getValue()) {
+                transport.write(writer);
+            }
+        }
+
+        writer.out.writeInt(destinations.size());
+        for (Map.Entry<String, Set<Integer>> entry : destinations.entrySet()) {
+            writer.putString(entry.getKey());
+            final int[] points = new int[entry.getValue().size()];
+            int i = 0;
+            for (int point : entry.getValue()) {
+                points[i++] = point;
+            }
+            writer.putIntArray(points);
+        }
+        writer.out.flush();
+
+        out.writeInt(VERSION);
+        out.writeInt(writer.strings.size());
+        for (String string : writer.strings) {
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+        final Skill[] skills = Skill.values();
+        out.writeByte(skills.length);
+        for (Skill skill : skills) {
+            final byte[] bytes = skill.getName().getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+        body.writeTo(out);
+    }
+
+    /** Reads the fields of the records, resolving interned strings, skills and quests */
+    static class Reader {
+        private static final int NONE = -1;
+
+        private final ByteBuffer buffer;
+        private final String[] strings;
+        // The client's ordinal of each skill of the index, or -1 if the client no longer has it
+        private final int[] skillOrdinals;
+        private final Quest[] questsByString;
+        private Map<String, Quest> questsByName;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; ++i) {
+                strings[i] = readString();
+            }
+            this.questsByString = new Quest[strings.length];
+
+            final Map<String, Integer> ordinals = new HashMap<>();
+            for (Skill skill : Skill.values()) {
+                ordinals.put(skill.getName(), skill.ordinal());
+            }
+            this.skillOrdinals = new int[buffer.get() & 0xFF];
+            for (int i = 0; i < skillOrdinals.length; ++i) {
+                skillOrdinals[i] = ordinals.getOrDefault(readString(), NONE);
+            }
+        }
+
+        private String readString() {
+            final int length = buffer.getShort() & 0xFFFF;
+            final String string = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return string;
+        }
+
+        int getInt() {
+            return buffer.getInt();
+        }
+
+        int getByte() {
+            return buffer.get();
+        }
+
+        int getUnsignedByte() {
+            return buffer.get() & 0xFF;
+        }
+
+        long getLong() {
+            return buffer.getLong();
+        }
+
+        String getString() {
+            final int id = buffer.getInt();
+            return id == NONE ? null : strings[id];
+        }
+
+        int getSkillOrdinal(int index) {
+            return skillOrdinals[index];
+        }
+
+        /** Returns the quest of an interned name, or null if the client has no quest with that name */
+        Quest getQuest() {
+            final int id = buffer.getInt();
+            if (questsByString[id] == null) {
+                if (questsByName == null) {
+                    questsByName = new HashMap<>();
+                    for (Quest quest : Quest.values()) {
+                        questsByName.put(quest.getName(), quest);
+                    }
+                }
+                questsByString[id] = questsByName.get(strings[id]);
+            }
+            return questsByString[id];
+        }
+
+        int[] getIntArray() {
+            final int length = buffer.getInt();
+            if (length == NONE) {
+                return null;
+            }
+            final int[] array = new int[length];
+            buffer.asIntBuffer().get(array);
+            buffer.position(buffer.position() + length * Integer.BYTES);
+            return array;
+        }
+    }
+
+    /** Writes the fields of the records, interning strings */
+    static class Writer {
+        final DataOutputStream out;
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void putString(String string) throws IOException {
+            if (string == null) {
+                out.writeInt(Reader.NONE);
+                return;
+            }
+            Integer id = ids.get(string);
+            if (id == null) {
+                id = strings.size();
+                ids.put(string, id);
+                strings.add(string);
+            }
+            out.writeInt(id);
+        }
+
+        void putIntArray(int[] array) throws IOException {
+            if (array == null) {
+                out.writeInt(Reader.NONE);
+                return;
+            }
+            out.writeInt(array.length);
+            for (int value : array) {
+                out.writeInt(value);
+            }
+        }
+    }
+}
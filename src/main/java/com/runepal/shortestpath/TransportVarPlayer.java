@@ -7,7 +7,9 @@ import lombok.Getter;
 public class TransportVarPlayer {
     @Getter
     private final int id;
+    @Getter
     private final int value;
+    @Getter
     private final TransportVarCheck check;
 
     public TransportVarPlayer(int id, int value, TransportVarCheck check) {
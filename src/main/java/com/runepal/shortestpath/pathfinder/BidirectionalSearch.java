@@ -0,0 +1,249 @@
+package com.runepal.shortestpath.pathfinder;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import com.runepal.shortestpath.Transport;
+import com.runepal.shortestpath.WorldPointUtil;
+
+/**
+ * One search from the start and one back from the targets, on the calling thread and on a thread of its own,
+ * until they meet. Each half closes tiles when it first reaches them, like the breadth-first search, with its
+ * own nodes and visited tiles, and shares the tiles it reaches with the other half through
+ * {@link SharedVisitedTiles}. The halves stop once the costs they are expanding add up to at least the cost
+ * of the cheapest meeting found. Teleports are only attached at the start, which holds outside the wilderness.
+ */
+class BidirectionalSearch {
+    private static final Transport[] NO_TELEPORTS = new Transport[0];
+    // Threads for the backward halves, which end after a minute without searches
+    private static final ExecutorService BACKWARD_EXECUTOR = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("pathfinder-backward-%d").setDaemon(true).build());
+    // How many tiles a half expands between reads of the clock for the cutoff
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    private final PathfinderConfig config;
+    private final CollisionMap map;
+    private final TransportTable transports;
+    private final TransportTable reversed;
+    private final int start;
+    private final int[] targets;
+    private final boolean targetInWilderness;
+    private final Transport[] startTeleports;
+    private final SharedVisitedTiles shared;
+    private final long cutoffTimeNanos;
+    // The tiles each half may expand with a node budget, which replaces the time cutoff
+    private final int nodeBudget;
+    // Counted down by each half when it stops expanding, after which the meeting can no longer change
+    private final CountDownLatch stoppedHalves = new CountDownLatch(2);
+    private volatile boolean stopped;
+
+    // Written while holding this; read without it to check whether to stop
+    private volatile int meetingCost = Integer.MAX_VALUE;
+    private int meetingTile = WorldPointUtil.UNDEFINED;
+
+    private int nodesChecked;
+    private int transportsChecked;
+
+    /** The start teleports are those usable at the start, which must not be in the wilderness */
+    BidirectionalSearch(PathfinderConfig config, TransportTable transports, int start, int[] targets,
+        boolean targetInWilderness, Transport[] startTeleports) {
+        this.config = config;
+        this.map = config.getMap();
+        this.transports = transports;
+        this.reversed = transports.reversed();
+        this.start = start;
+        this.targets = targets;
+        this.targetInWilderness = targetInWilderness;
+        this.startTeleports = startTeleports;
+        this.shared = new SharedVisitedTiles(map);
+        this.cutoffTimeNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getCalculationCutoffMillis());
+        this.nodeBudget = config.getNodeBudget();
+    }
+
+    int getNodesChecked() {
+        return nodesChecked;
+    }
+
+    int getTransportsChecked() {
+        return transportsChecked;
+    }
+
+    /**
+     * Returns the path from the start to the closest target, or null if the halves did not meet before the
+     * cutoff, in which case the caller should fall back to searching from the start alone.
+     */
+    List<Integer> run(Pathfinder pathfinder) {
+        final Half forward = new Half(SharedVisitedTiles.FORWARD);
+        final Half backward = new Half(SharedVisitedTiles.BACKWARD);
+        forward.other = backward;
+        backward.other = forward;
+
+        final Future<List<Integer>> backwardPath = BACKWARD_EXECUTOR.submit(() -> backward.run(pathfinder));
+        final List<Integer> path;
+        final List<Integer> rest;
+        try {
+            path = forward.run(pathfinder);
+            rest = backwardPath.get();
+        } catch (InterruptedException e) {
+            stopped = true;
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Backward search failed", e.getCause());
+        } finally {
+            nodesChecked = forward.nodesChecked + backward.nodesChecked;
+            transportsChecked = forward.transportsChecked + backward.transportsChecked;
+        }
+
+        if (path == null || rest == null) {
+            return null;
+        }
+        path.addAll(rest);
+        return path;
+    }
+
+    private synchronized void meet(int packedPosition, int cost) {
+        if (cost < meetingCost) {
+            meetingCost = cost;
+            meetingTile = packedPosition;
+        }
+    }
+
+    private synchronized int getMeetingTile() {
+        return meetingTile;
+    }
+
+    private class Half {
+        private final int direction;
+        private final BucketNodeQueue queue = new BucketNodeQueue();
+        private Half other;
+        // The cost of the node being expanded, which no later meeting through this half can be below
+        private volatile int expandingCost;
+        private int nodesChecked;
+        private int transportsChecked;
+        private int expanded;
+        // Pooled per thread by the config and only valid while run() is executing
+        private NodePool nodes;
+        private VisitedTiles visited;
+
+        Half(int direction) {
+            this.direction = direction;
+        }
+
+        /**
+         * Searches until the halves met or the search was cancelled, then returns this half's part of the path
+         * from the meeting: up to and including it going forwards, or after it going backwards.
+         */
+        List<Integer> run(Pathfinder pathfinder) throws InterruptedException {
+            nodes = config.getNodePool();
+            visited = config.getVisitedTiles();
+            try {
+                search(pathfinder);
+            } finally {
+                stoppedHalves.countDown();
+            }
+
+            try {
+                stoppedHalves.await();
+                final int meeting = getMeetingTile();
+                if (pathfinder.isCancelled() || meeting == WorldPointUtil.UNDEFINED) {
+                    return null;
+                }
+                final List<Integer> path = nodes.getPath(nodes.indexOf(meeting));
+                if (direction == SharedVisitedTiles.BACKWARD) {
+                    // From a target to the meeting, which the forward part already ends with
+                    Collections.reverse(path);
+                    return new ArrayList<>(path.subList(1, path.size()));
+                }
+                return path;
+            } finally {
+                queue.clear();
+                visited.clear();
+                visited = null;
+                nodes.clear();
+                nodes = null;
+            }
+        }
+
+        private void search(Pathfinder pathfinder) {
+            if (direction == SharedVisitedTiles.FORWARD) {
+                add(nodes.add(start, NodePool.NONE));
+            } else {
+                for (int target : targets) {
+                    if (!visited.get(target)) {
+                        add(nodes.add(target, NodePool.NONE));
+                    }
+                }
+            }
+
+            while (!stopped) {
+                if (queue.isEmpty()) {
+                    // The other half can still meet the tiles this one reached, at any cost of its own
+                    expandingCost = 0;
+                    return;
+                }
+                final int node = queue.poll();
+                final int cost = nodes.getCost(node);
+                expandingCost = cost;
+                ++expanded;
+                // Reading the other half's cost after writing this one's means at least one half sees both
+                if ((long) cost + other.expandingCost >= meetingCost || pathfinder.isCancelled()
+                    || (nodeBudget > 0 ? expanded > nodeBudget
+                        : expanded % TIME_CHECK_INTERVAL == 0 && System.nanoTime() - cutoffTimeNanos > 0)) {
+                    stopped = true;
+                    return;
+                }
+                addNeighbors(node);
+            }
+        }
+
+        private void addNeighbors(int node) {
+            final int packedPosition = nodes.getPosition(node);
+            final int first = nodes.size();
+            if (direction == SharedVisitedTiles.FORWARD) {
+                map.getNeighbors(node, nodes, visited, transports, packedPosition == start ? startTeleports : NO_TELEPORTS);
+            } else {
+                map.getPredecessors(node, nodes, visited, transports, reversed);
+            }
+            final int last = nodes.size();
+            // Rejected neighbours are dropped from the pool, so each tile has at most one node to build the path from
+            int kept = first;
+            for (int neighbor = first; neighbor < last; ++neighbor) {
+                final int neighborPosition = nodes.getPosition(neighbor);
+                final boolean avoid = direction == SharedVisitedTiles.FORWARD
+                    ? config.avoidWilderness(packedPosition, neighborPosition, targetInWilderness)
+                    : config.avoidWilderness(neighborPosition, packedPosition, targetInWilderness);
+                // Also skips a tile reached twice from this node, e.g. by a transport and by walking
+                if (avoid || visited.get(neighborPosition)) {
+                    continue;
+                }
+                if (nodes.isTransport(neighbor)) {
+                    ++transportsChecked;
+                } else {
+                    ++nodesChecked;
+                }
+                nodes.move(neighbor, kept);
+                add(kept++);
+            }
+            nodes.truncate(kept);
+        }
+
+        private void add(int node) {
+            final int packedPosition = nodes.getPosition(node);
+            final int cost = nodes.getCost(node);
+            visited.set(packedPosition);
+            queue.add(node, cost, nodes.isTransport(node));
+            final int otherCost = shared.visit(direction, packedPosition, cost);
+            if (otherCost != SharedVisitedTiles.UNREACHED) {
+                meet(packedPosition, cost + otherCost);
+            }
+        }
+    }
+}
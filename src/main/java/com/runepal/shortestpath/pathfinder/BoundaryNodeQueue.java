@@ -0,0 +1,44 @@
+package com.runepal.shortestpath.pathfinder;
+
+/**
+ * The original frontier: walking nodes are expanded breadth-first from a FIFO boundary, and transport
+ * nodes wait in a heap until they are cheaper than the head of the boundary.
+ */
+public class BoundaryNodeQueue implements NodeQueue {
+    // Capacities should be enough to store all nodes without requiring the queue to grow
+    // They were found by checking the max queue size
+    private final IntQueue boundary = new IntQueue(4096);
+    private final IntQueue boundaryCosts = new IntQueue(4096);
+    private final NodeHeap pending = new NodeHeap(256);
+
+    @Override
+    public void add(int node, int cost, boolean transport) {
+        if (transport) {
+            pending.add(node, cost);
+        } else {
+            boundary.add(node);
+            boundaryCosts.add(cost);
+        }
+    }
+
+    @Override
+    public int poll() {
+        if (!pending.isEmpty() && (boundary.isEmpty() || pending.peekCost() < boundaryCosts.peek())) {
+            return pending.poll();
+        }
+        boundaryCosts.poll();
+        return boundary.poll();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return boundary.isEmpty() && pending.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        boundary.clear();
+        boundaryCosts.clear();
+        pending.clear();
+    }
+}
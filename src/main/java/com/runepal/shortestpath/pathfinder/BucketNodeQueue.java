@@ -0,0 +1,116 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * Circular bucket queue (Dial's algorithm) for small integer costs. Walking and transport nodes share
+ * the same buckets, so adding and polling are O(1) without any comparisons.
+ * Costs must never be lower than the cost of the last polled node, which holds for a search
+ * that expands nodes in cost order since edge costs are never negative.
+ */
+public class BucketNodeQueue implements NodeQueue {
+    // Larger than the longest transport duration, so the buckets rarely have to grow
+    private static final int INITIAL_BUCKET_COUNT = 64;
+    private static final int INITIAL_BUCKET_SIZE = 64;
+
+    private int[][] buckets;
+    // Each bucket is a FIFO so nodes of equal cost keep the breadth-first order of the boundary,
+    // or a LIFO so A* follows the most recently found node along a plateau of equal estimated cost
+    private final boolean lastInFirstOut;
+    private int[] heads;
+    private int[] tails;
+    private int mask;
+    private int size = 0;
+    /** The cost of the last polled node, which is the lowest cost that can still be added */
+    private int currentCost = 0;
+
+    public BucketNodeQueue() {
+        this(false);
+    }
+
+    public BucketNodeQueue(boolean lastInFirstOut) {
+        this.lastInFirstOut = lastInFirstOut;
+        allocate(INITIAL_BUCKET_COUNT);
+    }
+
+    @Override
+    public void add(int node, int cost, boolean transport) {
+        if (cost < currentCost) {
+            throw new IllegalArgumentException("Cost " + cost + " is lower than the current cost " + currentCost);
+        }
+
+        if (cost - currentCost >= buckets.length) {
+            grow(cost - currentCost);
+        }
+
+        final int b = cost & mask;
+        if (tails[b] == buckets[b].length) {
+            buckets[b] = Arrays.copyOf(buckets[b], buckets[b].length * 2);
+        }
+        buckets[b][tails[b]++] = node;
+        ++size;
+    }
+
+    @Override
+    public int poll() {
+        int b = currentCost & mask;
+        while (heads[b] == tails[b]) {
+            b = ++currentCost & mask;
+        }
+
+        final int node = lastInFirstOut ? buckets[b][--tails[b]] : buckets[b][heads[b]++];
+        if (heads[b] == tails[b]) {
+            heads[b] = 0;
+            tails[b] = 0;
+        }
+        --size;
+        return node;
+    }
+
+    public int getCurrentCost() {
+        return currentCost;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(heads, 0);
+        Arrays.fill(tails, 0);
+        size = 0;
+        currentCost = 0;
+    }
+
+    private void allocate(int bucketCount) {
+        buckets = new int[bucketCount][INITIAL_BUCKET_SIZE];
+        heads = new int[bucketCount];
+        tails = new int[bucketCount];
+        mask = bucketCount - 1;
+    }
+
+    // Spreads the buckets over a larger circle; bucket i holds the nodes of the unique cost >= currentCost that maps to it
+    private void grow(int span) {
+        final int[][] oldBuckets = buckets;
+        final int[] oldHeads = heads;
+        final int[] oldTails = tails;
+        final int oldMask = mask;
+
+        allocate(Integer.highestOneBit(span) << 1);
+        for (int i = 0; i < oldBuckets.length; ++i) {
+            final int cost = currentCost + ((i - currentCost) & oldMask);
+            final int b = cost & mask;
+            final int count = oldTails[i] - oldHeads[i];
+            if (count == 0) {
+                continue;
+            }
+            if (buckets[b].length < count) {
+                buckets[b] = new int[count];
+            }
+            System.arraycopy(oldBuckets[i], oldHeads[i], buckets[b], 0, count);
+            tails[b] = count;
+        }
+    }
+}
@@ -0,0 +1,589 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.RuneLite;
+import com.runepal.shortestpath.Util;
+
+import static net.runelite.api.Constants.REGION_SIZE;
+
+/**
+ * The collision map as one flat, uncompressed file in the RuneLite cache directory, which is mapped read-only
+ * instead of being inflated onto the heap. The file is extracted from collision-map.zip on first use, and again
+ * whenever the resource changes.
+ * <p>
+ * Layout, little-endian: the version, the CRC32 of the resource, the checksum of the raw flags and the region
+ * extents, then a table with the data offset and plane count of every region within the extents, then the data
+ * of each region: one long per row of each plane and flag as in FlagMap, the walkable directions of each tile,
+ * and one long of blocked tiles per row.
+ */
+@Slf4j
+class CollisionFile {
+    private static final String RESOURCE_PATH = "/collision-map.zip";
+    private static final String FILE_NAME = "runepal-collision-map.dat";
+    private static final int VERSION = 2;
+    static final int HEADER_SIZE = Integer.BYTES + 2 * Long.BYTES + 4 * Integer.BYTES;
+    static final int TABLE_ENTRY_SIZE = Integer.BYTES + 1;
+    static final int NO_REGION = -1;
+    static final int FLAG_BYTES_PER_PLANE = FlagMap.FLAG_COUNT * REGION_SIZE * Long.BYTES;
+    static final int DIRECTION_BYTES_PER_PLANE = REGION_SIZE * REGION_SIZE;
+    static final int BLOCKED_BYTES_PER_PLANE = REGION_SIZE * Long.BYTES;
+    static final int REGION_BYTES_PER_PLANE = FLAG_BYTES_PER_PLANE + DIRECTION_BYTES_PER_PLANE + BLOCKED_BYTES_PER_PLANE;
+
+    // The direction masks of a region also depend on the flags of the tiles around it
+    private static final int WINDOW_PADDING = 2;
+    private static final int WINDOW_SIZE = REGION_SIZE + 2 * WINDOW_PADDING;
+
+    /**
+     * Maps the collision file, extracting it first if it is missing or out of date. If it cannot be written,
+     * the regions are decoded from the resource when first used instead, keeping at most decodedCacheSize
+     * bytes of decoded regions.
+     */
+    static SplitFlagMap load(long decodedCacheSize) {
+        final byte[] resource = readResource();
+        final CRC32 crc = new CRC32();
+        crc.update(resource);
+
+        final Path path = new File(RuneLite.CACHE_DIR, FILE_NAME).toPath();
+        try {
+            final ByteBuffer mapped = map(path);
+            if (mapped != null && mapped.getInt(0) == VERSION && mapped.getLong(Integer.BYTES) == crc.getValue()
+                && isComplete(mapped)) {
+                return parse(mapped);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to map " + path, e);
+        }
+
+        try {
+            // Checked before spending the time to build the file
+            Files.createDirectories(path.getParent());
+            extract(build(resource, crc.getValue()), path);
+            final ByteBuffer mapped = map(path);
+            if (mapped != null && isComplete(mapped)) {
+                return parse(mapped);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to extract the collision map to " + path + ", decoding regions on demand", e);
+        }
+
+        final SplitFlagMap decoded = decodeOnDemand(resource, decodedCacheSize);
+        return decoded != null ? decoded : parse(build(resource, crc.getValue()));
+    }
+
+    static byte[] readResource() {
+        try {
+            return Util.readAllBytes(PathfinderConfig.class.getResourceAsStream(RESOURCE_PATH));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Lays the resource out as the collision file on the heap, without extracting it */
+    static SplitFlagMap fromResource(byte[] resource) {
+        final CRC32 crc = new CRC32();
+        crc.update(resource);
+        return parse(build(resource, crc.getValue()));
+    }
+
+    /** A map that decodes the regions of the resource when first used, or null if the resource does not allow it */
+    static SplitFlagMap decodeOnDemand(byte[] resource, long decodedCacheSize) {
+        final RegionCache regionCache = RegionCache.fromResource(resource, decodedCacheSize);
+        if (regionCache == null) {
+            return null;
+        }
+        return new SplitFlagMap(regionCache.regionExtents, regionCache.regions, regionCache.planeCounts, regionCache);
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private static void extract(ByteBuffer data, Path path) throws IOException {
+        final Path temporary = Files.createTempFile(path.getParent(), FILE_NAME, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                final ByteBuffer source = data.duplicate();
+                source.clear();
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+            }
+            // Replaced in one step, so other clients never map a partially written file
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Whether the table of a mapped file only points within it and the file is exactly as long as the table calls
+     * for. A file cut short or with a corrupt table is extracted again rather than failing when its regions are sliced.
+     */
+    static boolean isComplete(ByteBuffer data) {
+        final long minX = data.getInt(20);
+        final long minY = data.getInt(24);
+        final long maxX = data.getInt(28);
+        final long maxY = data.getInt(32);
+        if (minX < 0 || minY < 0 || maxX < minX || maxY < minY) {
+            return false;
+        }
+        final long regionCount = (maxX - minX + 1) * (maxY - minY + 1);
+        final long dataStart = HEADER_SIZE + regionCount * TABLE_ENTRY_SIZE;
+        if (dataStart > data.capacity()) {
+            return false;
+        }
+
+        long size = dataStart;
+        for (int index = 0, entry = HEADER_SIZE; index < regionCount; ++index, entry += TABLE_ENTRY_SIZE) {
+            final int offset = data.getInt(entry);
+            final byte planes = data.get(entry + Integer.BYTES);
+            if (offset == NO_REGION) {
+                continue;
+            }
+            final long end = offset + (long) planes * REGION_BYTES_PER_PLANE;
+            if (offset < dataStart || planes <= 0 || end > data.capacity()) {
+                return false;
+            }
+            size += (long) planes * REGION_BYTES_PER_PLANE;
+        }
+        return size == data.capacity();
+    }
+
+    private static SplitFlagMap parse(ByteBuffer data) {
+        final long checksum = data.getLong(12);
+        final SplitFlagMap.RegionExtent regionExtents = new SplitFlagMap.RegionExtent(
+            data.getInt(20), data.getInt(24), data.getInt(28), data.getInt(32));
+        final int regionCount = (regionExtents.getWidth() + 1) * (regionExtents.getHeight() + 1);
+        final AtomicReferenceArray<ByteBuffer> regions = new AtomicReferenceArray<>(regionCount);
+        final byte[] planeCounts = new byte[regionCount];
+        for (int index = 0, entry = HEADER_SIZE; index < regionCount; ++index, entry += TABLE_ENTRY_SIZE) {
+            final int offset = data.getInt(entry);
+            planeCounts[index] = data.get(entry + Integer.BYTES);
+            if (offset != NO_REGION) {
+                final ByteBuffer region = data.duplicate();
+                region.limit(offset + planeCounts[index] * REGION_BYTES_PER_PLANE).position(offset);
+                regions.set(index, region.slice().order(ByteOrder.LITTLE_ENDIAN));
+            }
+        }
+        return new SplitFlagMap(regionExtents, regions, planeCounts, checksum);
+    }
+
+    /** Inflates the resource and lays it out as the collision file, on the heap */
+    static ByteBuffer build(byte[] resource, long crc) {
+        final Map<Integer, byte[]> compressedRegions = new HashMap<>();
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = 0;
+        int maxY = 0;
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(resource))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                String[] n = entry.getName().split("_");
+                final int x = Integer.parseInt(n[0]);
+                final int y = Integer.parseInt(n[1]);
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+
+                compressedRegions.put(SplitFlagMap.packPosition(x, y), Util.readAllBytes(in));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final int widthInclusive = maxX - minX + 1;
+        final int regionCount = widthInclusive * (maxY - minY + 1);
+        final byte[][] flags = new byte[regionCount][];
+        final FlagMap[] regionMaps = new FlagMap[regionCount];
+        int dataSize = 0;
+        for (Map.Entry<Integer, byte[]> entry : compressedRegions.entrySet()) {
+            final int x = SplitFlagMap.unpackX(entry.getKey());
+            final int y = SplitFlagMap.unpackY(entry.getKey());
+            final int index = (x - minX) + (y - minY) * widthInclusive;
+            flags[index] = entry.getValue();
+            regionMaps[index] = new FlagMap(x * REGION_SIZE, y * REGION_SIZE, entry.getValue());
+            dataSize += regionMaps[index].getPlaneCount() * REGION_BYTES_PER_PLANE;
+        }
+
+        final CRC32 checksum = new CRC32();
+        for (int index = 0; index < regionCount; ++index) {
+            if (flags[index] != null) {
+                updateChecksum(checksum, index, flags[index]);
+            }
+        }
+
+        final int tableSize = regionCount * TABLE_ENTRY_SIZE;
+        final ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + tableSize + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(VERSION).putLong(crc).putLong(checksum.getValue()).putInt(minX).putInt(minY).putInt(maxX).putInt(maxY);
+
+        final Grid grid = new Grid(i -> regionMaps[i], minX, minY, widthInclusive, regionCount);
+        int offset = HEADER_SIZE + tableSize;
+        for (int index = 0; index < regionCount; ++index) {
+            final FlagMap flagMap = regionMaps[index];
+            if (flagMap == null) {
+                data.putInt(NO_REGION).put((byte) 0);
+                continue;
+            }
+
+            data.putInt(offset).put(flagMap.getPlaneCount());
+            final ByteBuffer region = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            region.position(offset);
+            writeRegion(grid, index, region);
+            offset += flagMap.getPlaneCount() * REGION_BYTES_PER_PLANE;
+        }
+        return data.clear();
+    }
+
+    /** Adds the raw flags of a region to a checksum, as SplitFlagMap.getChecksum defines it */
+    static void updateChecksum(CRC32 checksum, int index, byte[] flags) {
+        int length = flags.length;
+        while (length > 0 && flags[length - 1] == 0) {
+            --length;
+        }
+        checksum.update(index >>> 24);
+        checksum.update(index >>> 16);
+        checksum.update(index >>> 8);
+        checksum.update(index);
+        checksum.update(flags, 0, length);
+    }
+
+    /** Writes the flag rows of a region, then the walkable directions of every tile, then its blocked tiles */
+    private static void writeRegion(Grid grid, int index, ByteBuffer out) {
+        final FlagMap flagMap = grid.regions.apply(index);
+        final int planeCount = flagMap.getPlaneCount();
+        final int minX = (index % grid.widthInclusive + grid.minX) * REGION_SIZE;
+        final int minY = (index / grid.widthInclusive + grid.minY) * REGION_SIZE;
+
+        final byte[] directions = new byte[planeCount * REGION_SIZE * REGION_SIZE];
+        final long[] blocked = new long[planeCount * REGION_SIZE];
+        // Flags of the region and a border of WINDOW_PADDING tiles around it, so neighbouring regions are read once
+        final boolean[] north = new boolean[WINDOW_SIZE * WINDOW_SIZE];
+        final boolean[] east = new boolean[WINDOW_SIZE * WINDOW_SIZE];
+        final boolean[] windowBlocked = new boolean[WINDOW_SIZE * WINDOW_SIZE];
+
+        for (int z = 0; z < planeCount; ++z) {
+            for (int flag = 0; flag < FlagMap.FLAG_COUNT; ++flag) {
+                for (int ry = 0; ry < REGION_SIZE; ++ry) {
+                    out.putLong(flagMap.getRow(ry, z, flag));
+                }
+            }
+        }
+
+        for (int z = 0; z < planeCount; ++z) {
+            for (int wy = 0; wy < WINDOW_SIZE; ++wy) {
+                final int ry = wy - WINDOW_PADDING;
+                final boolean inside = ry >= 0 && ry < REGION_SIZE;
+                final long northRow = inside ? flagMap.getRow(ry, z, 0) : 0;
+                final long eastRow = inside ? flagMap.getRow(ry, z, 1) : 0;
+                for (int wx = 0; wx < WINDOW_SIZE; ++wx) {
+                    final int rx = wx - WINDOW_PADDING;
+                    final int i = wy * WINDOW_SIZE + wx;
+                    if (inside && rx >= 0 && rx < REGION_SIZE) {
+                        north[i] = (northRow >>> rx & 1) != 0;
+                        east[i] = (eastRow >>> rx & 1) != 0;
+                    } else {
+                        north[i] = grid.get(minX + rx, minY + ry, z, 0);
+                        east[i] = grid.get(minX + rx, minY + ry, z, 1);
+                    }
+                }
+            }
+
+            for (int wy = 1; wy < WINDOW_SIZE - 1; ++wy) {
+                for (int wx = 1; wx < WINDOW_SIZE - 1; ++wx) {
+                    final int i = wy * WINDOW_SIZE + wx;
+                    windowBlocked[i] = !north[i] && !north[i - WINDOW_SIZE] && !east[i] && !east[i - 1];
+                }
+            }
+
+            for (int ry = 0; ry < REGION_SIZE; ++ry) {
+                for (int rx = 0; rx < REGION_SIZE; ++rx) {
+                    final int i = (ry + WINDOW_PADDING) * WINDOW_SIZE + rx + WINDOW_PADDING;
+                    final int w = i - 1;
+                    final int e = i + 1;
+                    final int s = i - WINDOW_SIZE;
+                    final int n = i + WINDOW_SIZE;
+                    int mask = 0;
+
+                    if (windowBlocked[i]) {
+                        blocked[z * REGION_SIZE + ry] |= 1L << rx;
+                        // Allow stepping off a blocked tile onto any unblocked neighbour
+                        mask |= SplitFlagMap.bit(OrdinalDirection.WEST, !windowBlocked[w]);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.EAST, !windowBlocked[e]);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.SOUTH, !windowBlocked[s]);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.NORTH, !windowBlocked[n]);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.SOUTH_WEST, !windowBlocked[s - 1] && !windowBlocked[w] && !windowBlocked[s]);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.SOUTH_EAST, !windowBlocked[s + 1] && !windowBlocked[e] && !windowBlocked[s]);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.NORTH_WEST, !windowBlocked[n - 1] && !windowBlocked[w] && !windowBlocked[n]);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.NORTH_EAST, !windowBlocked[n + 1] && !windowBlocked[e] && !windowBlocked[n]);
+                    } else {
+                        final boolean canW = east[w];
+                        final boolean canE = east[i];
+                        final boolean canS = north[s];
+                        final boolean canN = north[i];
+                        mask |= SplitFlagMap.bit(OrdinalDirection.WEST, canW);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.EAST, canE);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.SOUTH, canS);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.NORTH, canN);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.SOUTH_WEST, canS && east[s - 1] && canW && north[w - WINDOW_SIZE]);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.SOUTH_EAST, canS && east[s] && canE && north[e - WINDOW_SIZE]);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.NORTH_WEST, canN && east[n - 1] && canW && north[w]);
+                        mask |= SplitFlagMap.bit(OrdinalDirection.NORTH_EAST, canN && east[n] && canE && north[e]);
+                    }
+
+                    directions[(z * REGION_SIZE + ry) * REGION_SIZE + rx] = (byte) mask;
+                }
+            }
+        }
+
+        out.put(directions);
+        for (long row : blocked) {
+            out.putLong(row);
+        }
+    }
+
+    /** The regions around the ones whose directions are being written */
+    private static class Grid {
+        private final IntFunction<FlagMap> regions;
+        private final int minX;
+        private final int minY;
+        private final int widthInclusive;
+        private final int regionCount;
+
+        Grid(IntFunction<FlagMap> regions, int minX, int minY, int widthInclusive, int regionCount) {
+            this.regions = regions;
+            this.minX = minX;
+            this.minY = minY;
+            this.widthInclusive = widthInclusive;
+            this.regionCount = regionCount;
+        }
+
+        boolean get(int x, int y, int z, int flag) {
+            final int regionX = x / REGION_SIZE - minX;
+            final int regionY = y / REGION_SIZE - minY;
+            if (x < 0 || y < 0 || regionX < 0 || regionX >= widthInclusive || regionY < 0) {
+                return false;
+            }
+            final int index = regionX + regionY * widthInclusive;
+            if (index >= regionCount) {
+                return false;
+            }
+            final FlagMap flagMap = regions.apply(index);
+            return flagMap != null && z >= 0 && z < flagMap.getPlaneCount() && flagMap.get(x, y, z, flag);
+        }
+    }
+
+    /**
+     * The regions of the resource kept deflated, each decoded into the collision file layout when first used.
+     * Decoded regions are evicted in least recently used order once they take more than the capacity, with a
+     * clock: readers only mark a region as referenced, and eviction gives marked regions a second chance.
+     */
+    static class RegionCache {
+        private static final int LOCAL_HEADER = 0x04034b50;
+        private static final int LOCAL_HEADER_SIZE = 30;
+        private static final int DATA_DESCRIPTOR = 1 << 3;
+        private static final int STORED = 0;
+        private static final int DEFLATED = 8;
+
+        private final SplitFlagMap.RegionExtent regionExtents;
+        private final int widthInclusive;
+        // The zip entry of each region, without inflating it, or null for regions without collision data
+        private final byte[][] compressed;
+        private final boolean[] deflated;
+        private final int[] flagLengths;
+        private final byte[] planeCounts;
+        private final long capacity;
+        private final AtomicReferenceArray<ByteBuffer> regions;
+        // Of the raw flags as SplitFlagMap.getChecksum defines it, computed once from the resource
+        private final long checksum;
+        // Set by readers without synchronization; a lost update only costs a region its second chance
+        private final boolean[] referenced;
+        // Guarded by this
+        private final ArrayDeque<Integer> clock = new ArrayDeque<>();
+        private long size;
+
+        private RegionCache(SplitFlagMap.RegionExtent regionExtents, byte[][] compressed, boolean[] deflated,
+                            int[] flagLengths, byte[] planeCounts, long capacity) {
+            this.regionExtents = regionExtents;
+            this.widthInclusive = regionExtents.getWidth() + 1;
+            this.compressed = compressed;
+            this.deflated = deflated;
+            this.flagLengths = flagLengths;
+            this.planeCounts = planeCounts;
+            this.capacity = capacity;
+            this.regions = new AtomicReferenceArray<>(compressed.length);
+            this.referenced = new boolean[compressed.length];
+            this.checksum = computeChecksum();
+        }
+
+        /**
+         * Reads the local headers of the zip entries, or returns null if an entry does not record its sizes
+         * up front. The entries are BitSet.toByteArray output, so their size gives the plane count.
+         */
+        static RegionCache fromResource(byte[] resource, long capacity) {
+            final ByteBuffer zip = ByteBuffer.wrap(resource).order(ByteOrder.LITTLE_ENDIAN);
+            final Map<Integer, Integer> entries = new HashMap<>();
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxX = 0;
+            int maxY = 0;
+            for (int position = 0; position + LOCAL_HEADER_SIZE <= resource.length && zip.getInt(position) == LOCAL_HEADER; ) {
+                final int method = zip.getShort(position + 8) & 0xFFFF;
+                if ((zip.getShort(position + 6) & DATA_DESCRIPTOR) != 0 || (method != STORED && method != DEFLATED)) {
+                    return null;
+                }
+                final int nameLength = zip.getShort(position + 26) & 0xFFFF;
+                final int dataStart = position + LOCAL_HEADER_SIZE + nameLength + (zip.getShort(position + 28) & 0xFFFF);
+                String[] n = new String(resource, position + LOCAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8).split("_");
+                final int x = Integer.parseInt(n[0]);
+                final int y = Integer.parseInt(n[1]);
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+
+                entries.put(SplitFlagMap.packPosition(x, y), position);
+                position = dataStart + zip.getInt(position + 18);
+            }
+
+            final SplitFlagMap.RegionExtent regionExtents = new SplitFlagMap.RegionExtent(minX, minY, maxX, maxY);
+            final int widthInclusive = maxX - minX + 1;
+            final int regionCount = widthInclusive * (maxY - minY + 1);
+            final byte[][] compressed = new byte[regionCount][];
+            final boolean[] deflated = new boolean[regionCount];
+            final int[] flagLengths = new int[regionCount];
+            final byte[] planeCounts = new byte[regionCount];
+            Arrays.fill(flagLengths, NO_REGION);
+            for (Map.Entry<Integer, Integer> entry : entries.entrySet()) {
+                final int index = (SplitFlagMap.unpackX(entry.getKey()) - minX) + (SplitFlagMap.unpackY(entry.getKey()) - minY) * widthInclusive;
+                final int position = entry.getValue();
+                final int dataStart = position + LOCAL_HEADER_SIZE + (zip.getShort(position + 26) & 0xFFFF) + (zip.getShort(position + 28) & 0xFFFF);
+                compressed[index] = Arrays.copyOfRange(resource, dataStart, dataStart + zip.getInt(position + 18));
+                deflated[index] = (zip.getShort(position + 8) & 0xFFFF) == DEFLATED;
+                flagLengths[index] = zip.getInt(position + 22);
+                planeCounts[index] = FlagMap.planeCount(flagLengths[index]);
+            }
+            return new RegionCache(regionExtents, compressed, deflated, flagLengths, planeCounts, capacity);
+        }
+
+        void touch(int index) {
+            referenced[index] = true;
+        }
+
+        /** Decodes a region into the collision file layout and caches it, evicting other regions if needed */
+        synchronized ByteBuffer decode(int index) {
+            ByteBuffer region = regions.get(index);
+            if (region != null) {
+                return region;
+            }
+
+            // The directions of a region depend on the tiles just across its borders
+            final Map<Integer, FlagMap> flagMaps = new HashMap<>();
+            final Grid grid = new Grid(i -> flagMaps.computeIfAbsent(i, this::inflateFlagMap),
+                regionExtents.getMinX(), regionExtents.getMinY(), widthInclusive, compressed.length);
+            final int planeCount = planeCounts[index];
+            region = ByteBuffer.allocate(planeCount * REGION_BYTES_PER_PLANE).order(ByteOrder.LITTLE_ENDIAN);
+            writeRegion(grid, index, region);
+            region.clear();
+
+            size += region.capacity();
+            while (size > capacity && !clock.isEmpty()) {
+                final int candidate = clock.poll();
+                if (referenced[candidate]) {
+                    referenced[candidate] = false;
+                    clock.add(candidate);
+                } else {
+                    size -= regions.get(candidate).capacity();
+                    regions.set(candidate, null);
+                }
+            }
+            clock.add(index);
+            regions.set(index, region);
+            return region;
+        }
+
+        long getChecksum() {
+            return checksum;
+        }
+
+        // Inflates every region once, without decoding them into the cache
+        private long computeChecksum() {
+            final CRC32 checksum = new CRC32();
+            for (int index = 0; index < compressed.length; ++index) {
+                if (compressed[index] != null) {
+                    updateChecksum(checksum, index, inflate(index));
+                }
+            }
+            return checksum.getValue();
+        }
+
+        /** The raw flags of a region as serialized in the zip */
+        private byte[] inflate(int index) {
+            if (!deflated[index]) {
+                return compressed[index];
+            }
+            final Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed[index]);
+                final byte[] flags = new byte[flagLengths[index]];
+                int length = 0;
+                while (length < flags.length && !inflater.finished()) {
+                    final int inflated = inflater.inflate(flags, length, flags.length - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += inflated;
+                }
+                if (length != flags.length) {
+                    throw new IllegalStateException("Truncated collision data for region " + index);
+                }
+                return flags;
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupt collision data for region " + index, e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        private FlagMap inflateFlagMap(int index) {
+            if (compressed[index] == null) {
+                return null;
+            }
+            final int x = index % widthInclusive + regionExtents.getMinX();
+            final int y = index / widthInclusive + regionExtents.getMinY();
+            return new FlagMap(x * REGION_SIZE, y * REGION_SIZE, inflate(index));
+        }
+    }
+}
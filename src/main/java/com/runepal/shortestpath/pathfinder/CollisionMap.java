@@ -1,12 +1,12 @@
 package com.runepal.shortestpath.pathfinder;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
 import com.runepal.shortestpath.Transport;
 import com.runepal.shortestpath.WorldPointUtil;
 
+/**
+ * Walkable moves and transports between tiles. Holds no state of its own, since the nodes and visited tiles
+ * are passed in, so one instance is shared by every search and both halves of a bidirectional search.
+ */
 public class CollisionMap {
 
     // Enum.values() makes copies every time which hurts performance in the hotpath
@@ -42,24 +42,8 @@ public class CollisionMap {
         return e(x - 1, y, z);
     }
 
-    private boolean ne(int x, int y, int z) {
-        return n(x, y, z) && e(x, y + 1, z) && e(x, y, z) && n(x + 1, y, z);
-    }
-
-    private boolean nw(int x, int y, int z) {
-        return n(x, y, z) && w(x, y + 1, z) && w(x, y, z) && n(x - 1, y, z);
-    }
-
-    private boolean se(int x, int y, int z) {
-        return s(x, y, z) && e(x, y - 1, z) && e(x, y, z) && s(x + 1, y, z);
-    }
-
-    private boolean sw(int x, int y, int z) {
-        return s(x, y, z) && w(x, y - 1, z) && w(x, y, z) && s(x - 1, y, z);
-    }
-
     public boolean isBlocked(int x, int y, int z) {
-        return !n(x, y, z) && !s(x, y, z) && !e(x, y, z) && !w(x, y, z);
+        return collisionData.isBlocked(x, y, z);
     }
 
     private static int packedPointFromOrdinal(int startPacked, OrdinalDirection direction) {
@@ -69,76 +53,85 @@ public class CollisionMap {
         return WorldPointUtil.packWorldPoint(x + direction.x, y + direction.y, plane);
     }
 
-    // This is only safe if pathfinding is single-threaded
-    private final List<Node> neighbors = new ArrayList<>(16);
-    private final boolean[] traversable = new boolean[8];
-
-    public List<Node> getNeighbors(Node node, VisitedTiles visited, PathfinderConfig config) {
-        final int x = WorldPointUtil.unpackWorldX(node.packedPosition);
-        final int y = WorldPointUtil.unpackWorldY(node.packedPosition);
-        final int z = WorldPointUtil.unpackWorldPlane(node.packedPosition);
-
-        neighbors.clear();
-
-        @SuppressWarnings("unchecked") // Casting EMPTY_LIST to List<Transport> is safe here
-        Set<Transport> transports = config.getTransportsPacked().getOrDefault(node.packedPosition, (Set<Transport>)Collections.EMPTY_SET);
+    /**
+     * Appends the unvisited neighbours of a node to the pool; they are the nodes from the pool's previous size onwards.
+     * The transports are the usable ones of the search, and the teleports are those it attached to the node's tile, if any.
+     */
+    public void getNeighbors(int node, NodePool nodes, VisitedTiles visited, TransportTable transports, Transport[] teleports) {
+        final int packedPosition = nodes.getPosition(node);
+        final int x = WorldPointUtil.unpackWorldX(packedPosition);
+        final int y = WorldPointUtil.unpackWorldY(packedPosition);
+        final int z = WorldPointUtil.unpackWorldPlane(packedPosition);
 
         // Transports are pre-filtered by PathfinderConfig.refreshTransports
-        // Thus any transports in the list are guaranteed to be valid per the user's settings
-        for (Transport transport : transports) {
-            if (visited.get(transport.getDestination())) continue;
-            neighbors.add(new TransportNode(transport.getDestination(), node, transport.getDuration()));
+        // Thus any transports in the table are guaranteed to be valid per the user's settings
+        final int slot = transports.find(packedPosition);
+        if (slot != TransportTable.NONE) {
+            for (int i = transports.getStart(slot), end = transports.getEnd(slot); i < end; ++i) {
+                final Transport transport = transports.get(i);
+                if (visited.get(transport.getDestination())) continue;
+                nodes.addTransport(transport.getDestination(), node, transport.getDuration());
+            }
         }
-
-        if (isBlocked(x, y, z)) {
-            boolean westBlocked = isBlocked(x - 1, y, z);
-            boolean eastBlocked = isBlocked(x + 1, y, z);
-            boolean southBlocked = isBlocked(x, y - 1, z);
-            boolean northBlocked = isBlocked(x, y + 1, z);
-            boolean southWestBlocked = isBlocked(x - 1, y - 1, z);
-            boolean southEastBlocked = isBlocked(x + 1, y - 1, z);
-            boolean northWestBlocked = isBlocked(x - 1, y + 1, z);
-            boolean northEastBlocked = isBlocked(x + 1, y + 1, z);
-            traversable[0] = !westBlocked;
-            traversable[1] = !eastBlocked;
-            traversable[2] = !southBlocked;
-            traversable[3] = !northBlocked;
-            traversable[4] = !southWestBlocked && !westBlocked && !southBlocked;
-            traversable[5] = !southEastBlocked && !eastBlocked && !southBlocked;
-            traversable[6] = !northWestBlocked && !westBlocked && !northBlocked;
-            traversable[7] = !northEastBlocked && !eastBlocked && !northBlocked;
-        } else {
-            traversable[0] = w(x, y, z);
-            traversable[1] = e(x, y, z);
-            traversable[2] = s(x, y, z);
-            traversable[3] = n(x, y, z);
-            traversable[4] = sw(x, y, z);
-            traversable[5] = se(x, y, z);
-            traversable[6] = nw(x, y, z);
-            traversable[7] = ne(x, y, z);
+        for (Transport teleport : teleports) {
+            if (visited.get(teleport.getDestination())) continue;
+            nodes.addTransport(teleport.getDestination(), node, teleport.getDuration());
         }
 
-        for (int i = 0; i < traversable.length; i++) {
+        // Precomputed by SplitFlagMap, one bit per OrdinalDirection
+        final int traversable = collisionData.getDirections(x, y, z);
+
+        for (int i = 0; i < ORDINAL_VALUES.length; i++) {
             OrdinalDirection d = ORDINAL_VALUES[i];
-            int neighborPacked = packedPointFromOrdinal(node.packedPosition, d);
+            int neighborPacked = packedPointFromOrdinal(packedPosition, d);
             if (visited.get(neighborPacked)) continue;
 
-            if (traversable[i]) {
-                neighbors.add(new Node(neighborPacked, node));
+            if ((traversable & (1 << i)) != 0) {
+                nodes.add(neighborPacked, node);
             } else if (Math.abs(d.x + d.y) == 1 && isBlocked(x + d.x, y + d.y, z)) {
                 // The transport starts from a blocked adjacent tile, e.g. fairy ring
                 // Only checks non-teleport transports (includes portals and levers, but not items and spells)
-                @SuppressWarnings("unchecked") // Casting EMPTY_LIST to List<Transport> is safe here
-                Set<Transport> neighborTransports = config.getTransportsPacked().getOrDefault(neighborPacked, (Set<Transport>)Collections.EMPTY_SET);
-                for (Transport transport : neighborTransports) {
-                    if (transport.getOrigin() == Transport.UNDEFINED_ORIGIN || visited.get(transport.getOrigin())) {
-                        continue;
-                    }
-                    neighbors.add(new Node(transport.getOrigin(), node));
+                // which all start from the tile they are indexed by
+                if (transports.find(neighborPacked) != TransportTable.NONE) {
+                    nodes.add(neighborPacked, node);
                 }
             }
         }
+    }
+
+    /**
+     * Appends the unvisited tiles a node can be reached from to the pool, for searching backwards from the
+     * targets; they are the nodes from the pool's previous size onwards. Each costs the move or transport
+     * that leads from it to the node. The reversed table is {@link TransportTable#reversed()} of the transports.
+     */
+    public void getPredecessors(int node, NodePool nodes, VisitedTiles visited, TransportTable transports, TransportTable reversed) {
+        final int packedPosition = nodes.getPosition(node);
+        final int x = WorldPointUtil.unpackWorldX(packedPosition);
+        final int y = WorldPointUtil.unpackWorldY(packedPosition);
+        final int z = WorldPointUtil.unpackWorldPlane(packedPosition);
+
+        final int slot = reversed.find(packedPosition);
+        if (slot != TransportTable.NONE) {
+            for (int i = reversed.getStart(slot), end = reversed.getEnd(slot); i < end; ++i) {
+                final Transport transport = reversed.get(i);
+                if (visited.get(transport.getOrigin())) continue;
+                nodes.addTransport(transport.getOrigin(), node, transport.getDuration());
+            }
+        }
 
-        return neighbors;
+        // Any tile next to a blocked transport origin can step onto it, see getNeighbors
+        final boolean blockedOrigin = isBlocked(x, y, z) && transports.find(packedPosition) != TransportTable.NONE;
+        for (int i = 0; i < ORDINAL_VALUES.length; i++) {
+            OrdinalDirection d = ORDINAL_VALUES[i];
+            int neighborPacked = packedPointFromOrdinal(packedPosition, d);
+            if (visited.get(neighborPacked)) continue;
+
+            // The move from the neighbour back to this tile is the opposite direction
+            final int opposite = i ^ (i < 4 ? 1 : 3);
+            if ((collisionData.getDirections(x + d.x, y + d.y, z) & (1 << opposite)) != 0
+                || (blockedOrigin && Math.abs(d.x + d.y) == 1)) {
+                nodes.add(neighborPacked, node);
+            }
+        }
     }
 }
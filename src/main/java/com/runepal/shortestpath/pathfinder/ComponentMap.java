@@ -0,0 +1,443 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import com.runepal.shortestpath.Transport;
+import com.runepal.shortestpath.WorldPointUtil;
+
+import static net.runelite.api.Constants.REGION_SIZE;
+
+/**
+ * The connected components of the walkable tiles, so a target that no walk or usable transport leads to is
+ * rejected before searching. Tiles are labelled per region plane, and the labels of neighbouring region planes
+ * are joined where walking crosses the border. Only the first label of each region plane and the component of
+ * each label are kept; the label of a tile is found again by labelling its region plane. Moves are treated as
+ * two-way, so components may join tiles that cannot reach each other, but never separate tiles that can.
+ */
+@Slf4j
+public class ComponentMap {
+    private static final OrdinalDirection[] DIRECTIONS = OrdinalDirection.values();
+    private static final int MAX_PLANES = 4;
+    private static final int TILES = REGION_SIZE * REGION_SIZE;
+    private static final short NONE = -1;
+    // The border tiles of a region plane kept while building: the south row, north row, west column and east column
+    private static final int SOUTH = 0;
+    private static final int NORTH = REGION_SIZE;
+    private static final int WEST = REGION_SIZE * 2;
+    private static final int EAST = REGION_SIZE * 3;
+
+    private final SplitFlagMap map;
+    private final SplitFlagMap.RegionExtent regionExtents;
+    private final int widthInclusive;
+    private final byte[] regionPlanes;
+    // The first label of each region plane by region index * MAX_PLANES + plane, then the component of each label
+    private final int[] firstLabels;
+    private final int[] labelComponents;
+    @Getter
+    private final int componentCount;
+    // The components of every transport endpoint, so graphs of the usable transports need no labelling
+    private final Map<Integer, int[]> endpointComponents = new HashMap<>();
+
+    public ComponentMap(SplitFlagMap map, Map<Integer, Set<Transport>> allTransports) {
+        final long startTime = System.nanoTime();
+        this.map = map;
+        this.regionExtents = SplitFlagMap.getRegionExtents();
+        this.widthInclusive = regionExtents.getWidth() + 1;
+        this.regionPlanes = map.getRegionMapPlaneCounts();
+        this.firstLabels = new int[regionPlanes.length * MAX_PLANES];
+
+        final Set<Integer> endpoints = new HashSet<>();
+        for (Set<Transport> transports : allTransports.values()) {
+            for (Transport transport : transports) {
+                if (transport.getOrigin() != Transport.UNDEFINED_ORIGIN) {
+                    endpoints.add(transport.getOrigin());
+                }
+                endpoints.add(transport.getDestination());
+            }
+        }
+        final Map<Integer, List<Integer>> endpointsByRegionPlane = new HashMap<>();
+        for (int endpoint : endpoints) {
+            final int z = WorldPointUtil.unpackWorldPlane(endpoint);
+            final int index = getRegionIndex(WorldPointUtil.unpackWorldX(endpoint), WorldPointUtil.unpackWorldY(endpoint), z);
+            if (index >= 0) {
+                endpointsByRegionPlane.computeIfAbsent(index * MAX_PLANES + z, k -> new ArrayList<>()).add(endpoint);
+            }
+        }
+
+        final Labels labels = new Labels();
+        final short[][] borders = new short[firstLabels.length][];
+        final Map<Integer, Integer> endpointLabels = new HashMap<>();
+        int labelCount = 0;
+        for (int index = 0; index < regionPlanes.length; ++index) {
+            for (int z = 0; z < regionPlanes[index]; ++z) {
+                final int key = index * MAX_PLANES + z;
+                firstLabels[key] = labelCount;
+                labels.run(index, z);
+                borders[key] = labels.copyBorder();
+                for (int endpoint : endpointsByRegionPlane.getOrDefault(key, Collections.emptyList())) {
+                    final int label = labels.get(endpoint);
+                    if (label != NONE) {
+                        endpointLabels.put(endpoint, labelCount + label);
+                    }
+                }
+                labelCount += labels.count;
+            }
+        }
+
+        final int[] parents = new int[labelCount];
+        for (int i = 0; i < labelCount; ++i) {
+            parents[i] = i;
+        }
+        for (int index = 0; index < regionPlanes.length; ++index) {
+            for (int z = 0; z < regionPlanes[index]; ++z) {
+                joinBorder(parents, borders, index, z);
+            }
+        }
+
+        labelComponents = new int[labelCount];
+        int components = 0;
+        for (int i = 0; i < labelCount; ++i) {
+            final int root = find(parents, i);
+            // Roots are the lowest label of their set, so they are numbered before the other labels of it
+            labelComponents[i] = root == i ? components++ : labelComponents[root];
+        }
+
+        // Endpoints without a label, such as blocked transport origins or tiles outside the collision map, can
+        // only be left by a transport or a step onto a neighbour, so they get a component of their own for
+        // their transports besides the components of their neighbours
+        for (int endpoint : endpoints) {
+            final Integer label = endpointLabels.get(endpoint);
+            if (label != null) {
+                endpointComponents.put(endpoint, new int[]{labelComponents[label]});
+            } else {
+                final int[] neighbors = getNeighborComponents(endpoint, labels);
+                final int[] withOwn = Arrays.copyOf(neighbors, neighbors.length + 1);
+                withOwn[neighbors.length] = components++;
+                endpointComponents.put(endpoint, withOwn);
+            }
+        }
+        componentCount = components;
+        log.debug("Labelled {} walkable components in {} ms", componentCount, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    /** Whether the collision map has the region plane of a tile */
+    public boolean contains(int packedPoint) {
+        return getRegionIndex(WorldPointUtil.unpackWorldX(packedPoint), WorldPointUtil.unpackWorldY(packedPoint),
+            WorldPointUtil.unpackWorldPlane(packedPoint)) >= 0;
+    }
+
+    /**
+     * Returns the components a search reaching a tile can continue from: its own, or for tiles without a
+     * label those of the tiles around it, and of their transports if they have any. Empty for tiles that
+     * neither walking nor a transport can leave.
+     */
+    public int[] getComponents(int packedPoint) {
+        final int[] components = endpointComponents.get(packedPoint);
+        if (components != null) {
+            return components;
+        }
+
+        final Labels labels = new Labels();
+        final int z = WorldPointUtil.unpackWorldPlane(packedPoint);
+        final int index = getRegionIndex(WorldPointUtil.unpackWorldX(packedPoint), WorldPointUtil.unpackWorldY(packedPoint), z);
+        if (index >= 0) {
+            labels.run(index, z);
+            final int label = labels.get(packedPoint);
+            if (label != NONE) {
+                return new int[]{labelComponents[firstLabels[index * MAX_PLANES + z] + label]};
+            }
+        }
+        return getNeighborComponents(packedPoint, labels);
+    }
+
+    private int[] getNeighborComponents(int packedPoint, Labels labels) {
+        final int x = WorldPointUtil.unpackWorldX(packedPoint);
+        final int y = WorldPointUtil.unpackWorldY(packedPoint);
+        final int z = WorldPointUtil.unpackWorldPlane(packedPoint);
+        final Set<Integer> components = new HashSet<>();
+        for (OrdinalDirection d : DIRECTIONS) {
+            final int index = getRegionIndex(x + d.x, y + d.y, z);
+            if (index < 0) {
+                continue;
+            }
+            if (labels.index != index || labels.z != z) {
+                labels.run(index, z);
+            }
+            final int label = labels.get(WorldPointUtil.packWorldPoint(x + d.x, y + d.y, z));
+            if (label != NONE) {
+                components.add(labelComponents[firstLabels[index * MAX_PLANES + z] + label]);
+            }
+        }
+        return components.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Joins the labels of a region plane with those across its borders that a move leads to
+    private void joinBorder(int[] parents, short[][] borders, int index, int z) {
+        final int minX = regionMinX(index);
+        final int minY = regionMinY(index);
+        final short[] border = borders[index * MAX_PLANES + z];
+        for (int i = 0; i < border.length; ++i) {
+            if (border[i] == NONE) {
+                continue;
+            }
+            final int x = minX + (i < WEST ? i % REGION_SIZE : i < EAST ? 0 : REGION_SIZE - 1);
+            final int y = minY + (i < NORTH ? 0 : i < WEST ? REGION_SIZE - 1 : i % REGION_SIZE);
+            final int directions = map.getDirections(x, y, z);
+            for (OrdinalDirection d : DIRECTIONS) {
+                if ((directions & (1 << d.ordinal())) == 0) {
+                    continue;
+                }
+                final int nx = x + d.x;
+                final int ny = y + d.y;
+                final int neighborIndex = getRegionIndex(nx, ny, z);
+                if (neighborIndex < 0 || neighborIndex == index) {
+                    continue;
+                }
+                final int neighborLabel = borders[neighborIndex * MAX_PLANES + z][borderIndex(nx % REGION_SIZE, ny % REGION_SIZE)];
+                if (neighborLabel != NONE) {
+                    union(parents, firstLabels[index * MAX_PLANES + z] + border[i],
+                        firstLabels[neighborIndex * MAX_PLANES + z] + neighborLabel);
+                }
+            }
+        }
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    // Keeps the lower of the two roots, so the root of a set is always its first member
+    private static void union(int[] parents, int a, int b) {
+        final int rootA = find(parents, a);
+        final int rootB = find(parents, b);
+        if (rootA < rootB) {
+            parents[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parents[rootA] = rootB;
+        }
+    }
+
+    // The region index of a tile, or -1 if the collision map has no such region plane
+    private int getRegionIndex(int x, int y, int z) {
+        final int regionX = x / REGION_SIZE - regionExtents.getMinX();
+        final int regionY = y / REGION_SIZE - regionExtents.getMinY();
+        if (x < 0 || y < 0 || regionX < 0 || regionX >= widthInclusive || regionY < 0) {
+            return -1;
+        }
+        final int index = regionY * widthInclusive + regionX;
+        return index < regionPlanes.length && z < regionPlanes[index] ? index : -1;
+    }
+
+    private int regionMinX(int index) {
+        return (index % widthInclusive + regionExtents.getMinX()) * REGION_SIZE;
+    }
+
+    private int regionMinY(int index) {
+        return (index / widthInclusive + regionExtents.getMinY()) * REGION_SIZE;
+    }
+
+    // Where a border tile is kept; corners are kept in the south or north row
+    private static int borderIndex(int localX, int localY) {
+        if (localY == 0) {
+            return SOUTH + localX;
+        } else if (localY == REGION_SIZE - 1) {
+            return NORTH + localX;
+        } else if (localX == 0) {
+            return WEST + localY;
+        }
+        return EAST + localY;
+    }
+
+    /** Joins the components by a set of usable transports, and the teleports usable from the start */
+    public Graph newGraph(TransportTable transports, Transport[] teleports) {
+        return new Graph(transports, teleports);
+    }
+
+    /** The components joined by a set of usable transports */
+    public class Graph {
+        @Getter
+        private final TransportTable transports;
+        // The transport edges by component, with the targets of component i from edgeStarts[i] to edgeStarts[i + 1]
+        private final int[] edgeStarts = new int[componentCount + 1];
+        private final int[] edgeTargets;
+        private final int[] teleportComponents;
+
+        private Graph(TransportTable transports, Transport[] teleports) {
+            this.transports = transports;
+            for (int i = 0; i < transports.getTransportCount(); ++i) {
+                final Transport transport = transports.get(i);
+                final int destinationCount = getComponents(transport.getDestination()).length;
+                for (int origin : getComponents(transport.getOrigin())) {
+                    edgeStarts[origin + 1] += destinationCount;
+                }
+            }
+            for (int i = 0; i < componentCount; ++i) {
+                edgeStarts[i + 1] += edgeStarts[i];
+            }
+            edgeTargets = new int[edgeStarts[componentCount]];
+            final int[] next = Arrays.copyOf(edgeStarts, componentCount);
+            for (int i = 0; i < transports.getTransportCount(); ++i) {
+                final Transport transport = transports.get(i);
+                final int[] destinations = getComponents(transport.getDestination());
+                for (int origin : getComponents(transport.getOrigin())) {
+                    for (int destination : destinations) {
+                        edgeTargets[next[origin]++] = destination;
+                    }
+                }
+            }
+
+            final Set<Integer> components = new HashSet<>();
+            for (Transport teleport : teleports) {
+                for (int destination : getComponents(teleport.getDestination())) {
+                    components.add(destination);
+                }
+            }
+            teleportComponents = components.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * Whether walking and the transports might lead from the start to any of the targets. Only false when
+         * that is certain; always true for starts outside the collision map, such as instances, and for targets
+         * without a component, such as water, which a search still walks as close to as it can.
+         */
+        public boolean canReach(int start, int[] targets) {
+            if (!contains(start)) {
+                return true;
+            }
+
+            final int[][] targetComponents = new int[targets.length][];
+            for (int i = 0; i < targets.length; ++i) {
+                targetComponents[i] = getComponents(targets[i]);
+                if (targetComponents[i].length == 0) {
+                    return true;
+                }
+            }
+
+            final long[] reached = new long[(componentCount + Long.SIZE - 1) / Long.SIZE];
+            final IntQueue queue = new IntQueue(64);
+            for (int component : getComponents(start)) {
+                visit(reached, queue, component);
+            }
+            for (int component : teleportComponents) {
+                visit(reached, queue, component);
+            }
+            while (!queue.isEmpty()) {
+                final int component = queue.poll();
+                for (int i = edgeStarts[component]; i < edgeStarts[component + 1]; ++i) {
+                    visit(reached, queue, edgeTargets[i]);
+                }
+            }
+
+            for (int[] components : targetComponents) {
+                for (int component : components) {
+                    if (isReached(reached, component)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean isReached(long[] reached, int component) {
+            return (reached[component >>> 6] & 1L << component) != 0;
+        }
+
+        private void visit(long[] reached, IntQueue queue, int component) {
+            if (!isReached(reached, component)) {
+                reached[component >>> 6] |= 1L << component;
+                queue.add(component);
+            }
+        }
+    }
+
+    /**
+     * Labels the tiles of one region plane that can step onto, or be stepped onto from, another of its tiles,
+     * or that can walk out of the region. The labels are numbered in tile order, so they are the same every time.
+     */
+    private class Labels {
+        private final byte[] directions = new byte[TILES];
+        private final int[] parents = new int[TILES];
+        private final boolean[] joined = new boolean[TILES];
+        private final short[] labels = new short[TILES];
+        private int index = -1;
+        private int z;
+        private int minX;
+        private int minY;
+        private int count;
+
+        void run(int index, int z) {
+            this.index = index;
+            this.z = z;
+            minX = regionMinX(index);
+            minY = regionMinY(index);
+            map.copyDirections(index, z, directions);
+            Arrays.fill(joined, false);
+
+            // Joins each tile with its west, south-west, south and south-east neighbours if either can step onto the other
+            for (int tile = 0; tile < TILES; ++tile) {
+                parents[tile] = tile;
+                final int x = tile % REGION_SIZE;
+                if (x > 0) {
+                    join(tile, tile - 1, OrdinalDirection.WEST, OrdinalDirection.EAST);
+                }
+                if (tile >= REGION_SIZE) {
+                    join(tile, tile - REGION_SIZE, OrdinalDirection.SOUTH, OrdinalDirection.NORTH);
+                    if (x > 0) {
+                        join(tile, tile - REGION_SIZE - 1, OrdinalDirection.SOUTH_WEST, OrdinalDirection.NORTH_EAST);
+                    }
+                    if (x < REGION_SIZE - 1) {
+                        join(tile, tile - REGION_SIZE + 1, OrdinalDirection.SOUTH_EAST, OrdinalDirection.NORTH_WEST);
+                    }
+                }
+            }
+
+            count = 0;
+            for (int tile = 0; tile < TILES; ++tile) {
+                final int root = find(parents, tile);
+                if (root != tile) {
+                    labels[tile] = labels[root];
+                } else if (joined[tile] || directions[tile] != 0) {
+                    labels[tile] = (short) count++;
+                } else {
+                    labels[tile] = NONE;
+                }
+            }
+        }
+
+        private void join(int tile, int neighbor, OrdinalDirection toNeighbor, OrdinalDirection fromNeighbor) {
+            if ((directions[tile] & 1 << toNeighbor.ordinal()) != 0 || (directions[neighbor] & 1 << fromNeighbor.ordinal()) != 0) {
+                union(parents, tile, neighbor);
+                joined[tile] = true;
+                joined[neighbor] = true;
+            }
+        }
+
+        // The label of a tile of the labelled region plane, or NONE
+        int get(int packedPoint) {
+            return labels[(WorldPointUtil.unpackWorldY(packedPoint) - minY) * REGION_SIZE + WorldPointUtil.unpackWorldX(packedPoint) - minX];
+        }
+
+        short[] copyBorder() {
+            final short[] border = new short[REGION_SIZE * 4];
+            for (int i = 0; i < REGION_SIZE; ++i) {
+                border[SOUTH + i] = labels[i];
+                border[NORTH + i] = labels[(REGION_SIZE - 1) * REGION_SIZE + i];
+                border[WEST + i] = labels[i * REGION_SIZE];
+                border[EAST + i] = labels[i * REGION_SIZE + REGION_SIZE - 1];
+            }
+            return border;
+        }
+    }
+}
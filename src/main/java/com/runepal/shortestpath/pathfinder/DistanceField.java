@@ -0,0 +1,298 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import com.runepal.shortestpath.Transport;
+import com.runepal.shortestpath.WorldPointUtil;
+
+import static net.runelite.api.Constants.REGION_SIZE;
+
+/**
+ * The cost from every tile within a few regions of a hub to the hub, by walking and transports, so a path to
+ * the hub is found by descending the costs from the start instead of by a search. Built by a Dijkstra search
+ * backwards from the hub that stays within the regions, so a way to the hub that leaves them is not known.
+ * <p>
+ * Layout, little-endian: the version, the checksum of the collision map and transports, the hub, the region
+ * radius and the regions covered, then the plane count of each region, then the costs of each region as one
+ * unsigned short per tile of each plane, UNREACHED if the tile cannot reach the hub.
+ */
+public class DistanceField {
+    static final int VERSION = 1;
+    static final int UNREACHED = 0xFFFF;
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + 6 * Integer.BYTES;
+    private static final int TILES_PER_PLANE = REGION_SIZE * REGION_SIZE;
+    private static final Transport[] NO_TELEPORTS = new Transport[0];
+
+    private final ByteBuffer data;
+    private final long checksum;
+    private final int hub;
+    private final int minRegionX;
+    private final int minRegionY;
+    private final int width;
+    private final int height;
+    private final byte[] planeCounts;
+    // The byte offset of the costs of each region in the data
+    private final int[] regionOffsets;
+
+    private DistanceField(ByteBuffer data) {
+        this.data = data;
+        this.checksum = data.getLong(Integer.BYTES);
+        this.hub = data.getInt(12);
+        this.minRegionX = data.getInt(20);
+        this.minRegionY = data.getInt(24);
+        this.width = data.getInt(28);
+        this.height = data.getInt(32);
+        this.planeCounts = new byte[width * height];
+        this.regionOffsets = new int[planeCounts.length];
+        int offset = HEADER_SIZE + planeCounts.length;
+        for (int i = 0; i < planeCounts.length; ++i) {
+            planeCounts[i] = data.get(HEADER_SIZE + i);
+            regionOffsets[i] = offset;
+            offset += planeCounts[i] * TILES_PER_PLANE * Character.BYTES;
+        }
+    }
+
+    public int getHub() {
+        return hub;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /** How many regions around the hub's region the field covers */
+    public int getRadius() {
+        return data.getInt(16);
+    }
+
+    /** The cost from a tile to the hub, or UNREACHED if it is outside the field or cannot reach the hub */
+    public int getCost(int packedPoint) {
+        final int x = WorldPointUtil.unpackWorldX(packedPoint);
+        final int y = WorldPointUtil.unpackWorldY(packedPoint);
+        final int plane = WorldPointUtil.unpackWorldPlane(packedPoint);
+        final int index = regionIndex(x, y);
+        if (index < 0 || plane >= planeCounts[index]) {
+            return UNREACHED;
+        }
+        return data.getChar(regionOffsets[index] + tileIndex(x, y, plane) * Character.BYTES);
+    }
+
+    /**
+     * The path from the start to the hub, following at each tile a move or transport that lowers the cost by
+     * exactly what it takes, after one of the teleports if that is cheaper than walking. Null if the start is
+     * outside the field, or if the only ways down would enter the wilderness while the config avoids it.
+     */
+    public List<Integer> descend(int start, PathfinderConfig config, TransportTable transports, Transport[] teleports) {
+        int tile = start;
+        int cost = getCost(start);
+        long bestCost = cost;
+        final List<Integer> path = new ArrayList<>();
+        path.add(start);
+        for (Transport teleport : teleports) {
+            final int destinationCost = getCost(teleport.getDestination());
+            if (destinationCost != UNREACHED && (long) teleport.getDuration() + destinationCost < bestCost) {
+                bestCost = (long) teleport.getDuration() + destinationCost;
+                tile = teleport.getDestination();
+                cost = destinationCost;
+            }
+        }
+        if (cost == UNREACHED) {
+            return null;
+        }
+        if (tile != start) {
+            path.add(tile);
+        }
+
+        final CollisionMap map = config.getMap();
+        final NodePool moves = new NodePool();
+        // Never set, so every move is returned
+        final VisitedTiles noneVisited = new VisitedTiles(map);
+        final boolean hubInWilderness = PathfinderConfig.isInWilderness(hub);
+        // Where the cost last went down; transports that take no time, such as some doors, keep it level
+        int levelFrom = path.size() - 1;
+        while (tile != hub) {
+            moves.clear();
+            map.getNeighbors(moves.add(tile, NodePool.NONE), moves, noneVisited, transports, NO_TELEPORTS);
+            int next = WorldPointUtil.UNDEFINED;
+            int nextCost = Integer.MAX_VALUE;
+            for (int move = 1; move < moves.size(); ++move) {
+                final int position = moves.getPosition(move);
+                final int remaining = getCost(position);
+                if (remaining == UNREACHED || remaining + moves.getCost(move) != cost || remaining >= nextCost
+                    || config.avoidWilderness(tile, position, hubInWilderness)) {
+                    continue;
+                }
+                // A move that keeps the cost level must not lead back to a tile on this level, or it could go round
+                if (remaining == cost && path.subList(levelFrom, path.size()).contains(position)) {
+                    continue;
+                }
+                next = position;
+                nextCost = remaining;
+            }
+            if (next == WorldPointUtil.UNDEFINED) {
+                return null;
+            }
+            tile = next;
+            if (nextCost < cost) {
+                levelFrom = path.size();
+            }
+            cost = nextCost;
+            path.add(tile);
+        }
+        return path;
+    }
+
+    /**
+     * Computes the costs to the hub from every tile within the given number of regions of the hub's region,
+     * by walking and by the given transports.
+     */
+    static DistanceField build(CollisionMap map, TransportTable transports, int hub, int radius, long checksum) {
+        final int hubRegionX = WorldPointUtil.unpackWorldX(hub) / REGION_SIZE;
+        final int hubRegionY = WorldPointUtil.unpackWorldY(hub) / REGION_SIZE;
+        final SplitFlagMap.RegionExtent extents = SplitFlagMap.getRegionExtents();
+        final int minRegionX = Math.max(extents.getMinX(), hubRegionX - radius);
+        final int minRegionY = Math.max(extents.getMinY(), hubRegionY - radius);
+        final int width = Math.max(0, Math.min(extents.getMaxX(), hubRegionX + radius) - minRegionX + 1);
+        final int height = Math.max(0, Math.min(extents.getMaxY(), hubRegionY + radius) - minRegionY + 1);
+
+        final byte[] mapPlanes = map.getPlanes();
+        final int widthInclusive = extents.getWidth() + 1;
+        final byte[] planeCounts = new byte[width * height];
+        int size = HEADER_SIZE + planeCounts.length;
+        for (int ry = 0; ry < height; ++ry) {
+            for (int rx = 0; rx < width; ++rx) {
+                final int mapIndex = (minRegionX + rx - extents.getMinX()) + (minRegionY + ry - extents.getMinY()) * widthInclusive;
+                planeCounts[ry * width + rx] = mapPlanes[mapIndex];
+                size += mapPlanes[mapIndex] * TILES_PER_PLANE * Character.BYTES;
+            }
+        }
+
+        final ByteBuffer data = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(VERSION).putLong(checksum).putInt(hub).putInt(radius)
+            .putInt(minRegionX).putInt(minRegionY).putInt(width).putInt(height).put(planeCounts);
+        while (data.hasRemaining()) {
+            data.putChar((char) UNREACHED);
+        }
+        final DistanceField field = new DistanceField(data.clear());
+        field.search(map, transports);
+        return field;
+    }
+
+    /**
+     * Maps a field written by {@link #write(Path)}, or returns null if it is missing, from another version, or
+     * not the size its header and plane counts call for, such as a file cut short.
+     */
+    static DistanceField read(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            final ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            return data.getInt(0) == VERSION && expectedSize(data) == data.capacity() ? new DistanceField(data) : null;
+        }
+    }
+
+    // The size of a field with the header and plane counts of the data, or -1 if they cannot be those of a field
+    private static long expectedSize(ByteBuffer data) {
+        final int width = data.getInt(28);
+        final int height = data.getInt(32);
+        if (width < 0 || height < 0 || (long) width * height > data.capacity() - HEADER_SIZE) {
+            return -1;
+        }
+        long size = HEADER_SIZE + width * height;
+        for (int i = 0; i < width * height; ++i) {
+            final byte planes = data.get(HEADER_SIZE + i);
+            if (planes < 0) {
+                return -1;
+            }
+            size += (long) planes * TILES_PER_PLANE * Character.BYTES;
+        }
+        return size;
+    }
+
+    void write(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        final Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                final ByteBuffer source = data.duplicate();
+                source.clear();
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+            }
+            // Replaced in one step, so other clients never map a partially written file
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void search(CollisionMap map, TransportTable transports) {
+        final TransportTable reversed = transports.reversed();
+        final NodeHeap heap = new NodeHeap(1 << 12);
+        final NodePool moves = new NodePool();
+        final VisitedTiles noneVisited = new VisitedTiles(map);
+        if (getCost(hub) == UNREACHED && regionIndex(WorldPointUtil.unpackWorldX(hub), WorldPointUtil.unpackWorldY(hub)) >= 0) {
+            setCost(hub, 0);
+            heap.add(hub, 0);
+        }
+
+        while (!heap.isEmpty()) {
+            final int cost = heap.peekCost();
+            final int tile = heap.poll();
+            if (cost != getCost(tile)) {
+                continue; // Queued again at a lower cost since
+            }
+            moves.clear();
+            map.getPredecessors(moves.add(tile, NodePool.NONE), moves, noneVisited, transports, reversed);
+            for (int move = 1; move < moves.size(); ++move) {
+                final int previous = moves.getPosition(move);
+                final int previousCost = cost + moves.getCost(move);
+                // Tiles outside the regions, and costs too high to store, are left unreached
+                if (previousCost < getCost(previous) && previousCost < UNREACHED && contains(previous)) {
+                    setCost(previous, previousCost);
+                    heap.add(previous, previousCost);
+                }
+            }
+        }
+    }
+
+    private boolean contains(int packedPoint) {
+        final int index = regionIndex(WorldPointUtil.unpackWorldX(packedPoint), WorldPointUtil.unpackWorldY(packedPoint));
+        return index >= 0 && WorldPointUtil.unpackWorldPlane(packedPoint) < planeCounts[index];
+    }
+
+    private void setCost(int packedPoint, int cost) {
+        final int x = WorldPointUtil.unpackWorldX(packedPoint);
+        final int y = WorldPointUtil.unpackWorldY(packedPoint);
+        final int plane = WorldPointUtil.unpackWorldPlane(packedPoint);
+        data.putChar(regionOffsets[regionIndex(x, y)] + tileIndex(x, y, plane) * Character.BYTES, (char) cost);
+    }
+
+    // The index of the region within the field, or -1 if it is outside
+    private int regionIndex(int x, int y) {
+        final int rx = x / REGION_SIZE - minRegionX;
+        final int ry = y / REGION_SIZE - minRegionY;
+        if (x < 0 || y < 0 || rx < 0 || rx >= width || ry < 0 || ry >= height) {
+            return -1;
+        }
+        return ry * width + rx;
+    }
+
+    private static int tileIndex(int x, int y, int plane) {
+        return (plane * REGION_SIZE + y % REGION_SIZE) * REGION_SIZE + x % REGION_SIZE;
+    }
+}
@@ -0,0 +1,143 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.RuneLite;
+import com.runepal.shortestpath.Transport;
+import com.runepal.shortestpath.WorldPointUtil;
+
+import static net.runelite.api.Constants.REGION_SIZE;
+
+/**
+ * The {@link DistanceField} of every registered hub, the places the bot keeps walking back to such as banks,
+ * kept in the RuneLite cache directory. A field is only used with the transports it was built for, told apart
+ * by a checksum of the collision map and the transports within its regions, and is built again and replaces
+ * the file when they change, so a transport becoming usable elsewhere leaves it alone. Fields are updated off
+ * the client thread, and read by any thread.
+ */
+@Slf4j
+public class DistanceFields {
+    private static final String DIRECTORY_NAME = "runepal-distance-fields";
+    /** How many regions around the hub's region a field covers */
+    static final int RADIUS = 3;
+
+    private final SplitFlagMap mapData;
+    private final CollisionMap map;
+    private final Path directory;
+    private final Set<Integer> hubs = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, DistanceField> fields = new ConcurrentHashMap<>();
+    // The transports each field was last found to be up to date with
+    private final Map<Integer, TransportTable> fieldTransports = new ConcurrentHashMap<>();
+
+    DistanceFields(SplitFlagMap mapData, CollisionMap map) {
+        this.mapData = mapData;
+        this.map = map;
+        this.directory = new File(RuneLite.CACHE_DIR, DIRECTORY_NAME).toPath();
+    }
+
+    /** Registers a hub, whose field is loaded or built by the next {@link #update(TransportTable)} */
+    public void register(int hub) {
+        hubs.add(hub);
+    }
+
+    /**
+     * Makes the field of every registered hub match the transports, mapping it from its file or building and
+     * writing it. Building takes a moment for each hub, so this must not run on the client thread.
+     */
+    public synchronized void update(TransportTable transports) {
+        if (hubs.isEmpty()) {
+            return;
+        }
+        for (int hub : hubs) {
+            final long checksum = getChecksum(transports, hub);
+            final DistanceField current = fields.get(hub);
+            if (current != null && current.getChecksum() == checksum) {
+                fieldTransports.put(hub, transports);
+                continue;
+            }
+            fieldTransports.remove(hub);
+            try {
+                fields.put(hub, load(hub, transports, checksum));
+                fieldTransports.put(hub, transports);
+            } catch (RuntimeException e) {
+                // Such as a file another client is replacing; the hub is tried again by the next update
+                log.warn("Unable to update the distance field of {}", hub, e);
+                fields.remove(hub);
+            }
+        }
+    }
+
+    // Maps the field of a hub from its file, or builds it and writes the file if that is missing or out of date
+    private DistanceField load(int hub, TransportTable transports, long checksum) {
+        final Path path = directory.resolve(fileName(hub));
+        DistanceField field = null;
+        try {
+            field = DistanceField.read(path);
+        } catch (IOException e) {
+            log.warn("Unable to map " + path, e);
+        }
+        if (field == null || field.getChecksum() != checksum || field.getRadius() != RADIUS) {
+            log.debug("Building the distance field of {}", hub);
+            field = DistanceField.build(map, transports, hub, RADIUS, checksum);
+            try {
+                field.write(path);
+            } catch (IOException e) {
+                log.warn("Unable to write " + path + ", the field is kept in memory only", e);
+            }
+        }
+        return field;
+    }
+
+    /**
+     * The path from the start to a hub by descending its field, without searching. Null if the target is not a
+     * hub, its field has not been built for these transports yet, or the start cannot descend it.
+     */
+    public List<Integer> findPath(int start, int target, PathfinderConfig config, TransportTable transports) {
+        // Checked before the field is read, so a field replaced meanwhile is the one checked or a newer one
+        if (fieldTransports.get(target) != transports) {
+            return null;
+        }
+        final DistanceField field = fields.get(target);
+        if (field == null) {
+            return null;
+        }
+        return field.descend(start, config, transports, config.getTeleportsAt(start));
+    }
+
+    /**
+     * The checksum of the collision map and of the transports a field of the hub can use, which are those that
+     * start and end within its regions since its search never leaves them.
+     */
+    private long getChecksum(TransportTable transports, int hub) {
+        final int hubRegionX = WorldPointUtil.unpackWorldX(hub) / REGION_SIZE;
+        final int hubRegionY = WorldPointUtil.unpackWorldY(hub) / REGION_SIZE;
+        long value = mapData.getChecksum();
+        for (int i = 0; i < transports.getTransportCount(); ++i) {
+            final Transport transport = transports.get(i);
+            if (!isNear(transport.getOrigin(), hubRegionX, hubRegionY) || !isNear(transport.getDestination(), hubRegionX, hubRegionY)) {
+                continue;
+            }
+            // Summed so the order of the transports does not matter, like Landmarks.checksum
+            value += Landmarks.mix(((long) transport.getOrigin() << 32 | transport.getDestination() & 0xFFFFFFFFL)
+                ^ (long) transport.getDuration() * 0x9E3779B97F4A7C15L);
+        }
+        return value;
+    }
+
+    // Whether a tile is within RADIUS regions of the hub's region
+    private static boolean isNear(int packedPoint, int hubRegionX, int hubRegionY) {
+        return packedPoint != Transport.UNDEFINED_ORIGIN
+            && Math.abs(WorldPointUtil.unpackWorldX(packedPoint) / REGION_SIZE - hubRegionX) <= RADIUS
+            && Math.abs(WorldPointUtil.unpackWorldY(packedPoint) / REGION_SIZE - hubRegionY) <= RADIUS;
+    }
+
+    private static String fileName(int hub) {
+        return DistanceField.VERSION + "_" + Integer.toHexString(hub) + ".dat";
+    }
+}
@@ -0,0 +1,183 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import com.runepal.shortestpath.Transport;
+
+/**
+ * One Dijkstra search from the start that keeps going after the first target, until every target is reached,
+ * and returns the cost and path to each of them ranked from cheapest. Meant for choosing between destinations,
+ * such as the closest bank, which would otherwise take a search per destination. Teleports are only used from
+ * the start, and the search gives up once it has reached no new target for the calculation cutoff, or for the
+ * node budget if the config has one.
+ */
+public class DistanceSearch implements Runnable {
+    private static final Transport[] NO_TELEPORTS = new Transport[0];
+    // How many tiles are expanded between reads of the clock for the cutoff
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    private final PathfinderConfig config;
+    private final CollisionMap map;
+    private final TransportTable transports;
+    @Getter
+    private final int start;
+    private final int[] targets;
+    private final Map<Integer, Integer> targetIndexes;
+    private final boolean targetInWilderness;
+
+    private volatile boolean done = false;
+    private volatile boolean cancelled = false;
+    private volatile List<TargetDistance> distances = Collections.emptyList();
+
+    public DistanceSearch(PathfinderConfig config, int start, Set<Integer> targets) {
+        this.config = config;
+        this.map = config.getMap();
+        this.transports = config.getTransportTable();
+        this.start = start;
+        this.targets = targets.stream().mapToInt(Integer::intValue).toArray();
+        this.targetIndexes = new HashMap<>(targets.size() * 2);
+        for (int i = 0; i < this.targets.length; ++i) {
+            targetIndexes.put(this.targets[i], i);
+        }
+        this.targetInWilderness = PathfinderConfig.isInWilderness(targets);
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /** The reached targets, cheapest first; targets that cannot be reached are left out. Empty until done. */
+    public List<TargetDistance> getDistances() {
+        return distances;
+    }
+
+    @Override
+    public void run() {
+        if (!config.canReach(start, targets, transports)) {
+            done = !cancelled;
+            return;
+        }
+
+        final NodePool nodes = config.getNodePool();
+        final VisitedTiles visited = config.getVisitedTiles(); // Never set, so every neighbour is returned
+        final TileCosts costs = config.getTileCosts();
+        final BucketNodeQueue queue = new BucketNodeQueue();
+        final Transport[] startTeleports = config.getTeleportsAt(start);
+        final int[] targetNodes = new int[targets.length];
+        Arrays.fill(targetNodes, NodePool.NONE);
+        int remaining = 0;
+        for (int target : targets) {
+            // A target that cannot be reached would keep the search going until it has been everywhere
+            if (config.canReach(start, new int[] { target }, transports)) {
+                ++remaining;
+            } else {
+                targetIndexes.remove(target);
+            }
+        }
+
+        try {
+            costs.set(start, 0);
+            queue.add(nodes.add(start, NodePool.NONE), 0, false);
+            final int nodeBudget = config.getNodeBudget();
+            final long cutoffDurationNanos = TimeUnit.MILLISECONDS.toNanos(config.getCalculationCutoffMillis());
+            long cutoffTimeNanos = System.nanoTime() + cutoffDurationNanos;
+            int expanded = 0;
+            int reachedAt = 0;
+            boolean reachedTarget = false;
+
+            while (!cancelled && remaining > 0 && !queue.isEmpty()) {
+                final int node = queue.poll();
+                final int packedPosition = nodes.getPosition(node);
+                if (nodes.getCost(node) > costs.get(packedPosition)) {
+                    continue; // The tile has been queued again at a lower cost since
+                }
+
+                ++expanded;
+                final Integer target = targetIndexes.get(packedPosition);
+                if (target != null && targetNodes[target] == NodePool.NONE) {
+                    targetNodes[target] = node;
+                    --remaining;
+                    reachedAt = expanded;
+                    reachedTarget = true;
+                } else if (nodeBudget > 0 && expanded - reachedAt > nodeBudget) {
+                    break;
+                }
+                if (expanded % TIME_CHECK_INTERVAL == 0) {
+                    final long nowNanos = System.nanoTime();
+                    if (reachedTarget) {
+                        cutoffTimeNanos = nowNanos + cutoffDurationNanos;
+                        reachedTarget = false;
+                    } else if (nodeBudget <= 0 && nowNanos - cutoffTimeNanos > 0) {
+                        break;
+                    }
+                }
+
+                addNeighbors(node, nodes, visited, costs, queue, packedPosition == start ? startTeleports : NO_TELEPORTS);
+            }
+
+            final List<TargetDistance> reached = new ArrayList<>();
+            for (int i = 0; i < targets.length; ++i) {
+                if (targetNodes[i] != NodePool.NONE) {
+                    reached.add(new TargetDistance(targets[i], nodes.getCost(targetNodes[i]), nodes.getPath(targetNodes[i])));
+                }
+            }
+            reached.sort(Comparator.comparingInt(TargetDistance::getCost));
+            distances = Collections.unmodifiableList(reached);
+            done = !cancelled;
+        } finally {
+            queue.clear();
+            costs.clear();
+            visited.clear();
+            nodes.clear();
+        }
+    }
+
+    private void addNeighbors(int node, NodePool nodes, VisitedTiles visited, TileCosts costs, BucketNodeQueue queue,
+        Transport[] teleports) {
+        final int packedPosition = nodes.getPosition(node);
+        final int first = nodes.size();
+        map.getNeighbors(node, nodes, visited, transports, teleports);
+        final int last = nodes.size();
+        // Neighbours that are not cheaper than before are dropped from the pool by moving the kept ones down
+        int kept = first;
+        for (int neighbor = first; neighbor < last; ++neighbor) {
+            final int neighborPosition = nodes.getPosition(neighbor);
+            final int cost = nodes.getCost(neighbor);
+            if (cost >= costs.get(neighborPosition)
+                || config.avoidWilderness(packedPosition, neighborPosition, targetInWilderness)) {
+                continue;
+            }
+            costs.set(neighborPosition, cost);
+            nodes.move(neighbor, kept);
+            queue.add(kept, cost, nodes.isTransport(kept));
+            ++kept;
+        }
+        nodes.truncate(kept);
+    }
+
+    /** The cost and path from the start to one of the targets */
+    @Getter
+    public static class TargetDistance {
+        private final int target;
+        private final int cost;
+        private final List<Integer> path;
+
+        private TargetDistance(int target, int cost, List<Integer> path) {
+            this.target = target;
+            this.cost = cost;
+            this.path = Collections.unmodifiableList(path);
+        }
+    }
+}
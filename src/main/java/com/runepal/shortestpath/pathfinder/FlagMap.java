@@ -1,13 +1,19 @@
 package com.runepal.shortestpath.pathfinder;
 
-import java.util.BitSet;
-import java.util.Locale;
 import lombok.Getter;
 import static net.runelite.api.Constants.REGION_SIZE;
 
+/**
+ * The collision flags of one region, with one long per row of a plane and flag: bit x of a row is the tile
+ * x tiles east of the region's west edge. Bounds are not checked, callers such as SplitFlagMap validate the
+ * tile, plane and flag once before reading.
+ */
 public class FlagMap {
-    private static final byte FLAG_COUNT = 2;
-    private final BitSet flags;
+    static final byte FLAG_COUNT = 2;
+    // Size of a plane in the BitSet layout of collision-map.zip, where the flags of a tile are adjacent bits
+    private static final int SERIALIZED_BYTES_PER_PLANE = REGION_SIZE * REGION_SIZE * FLAG_COUNT / Byte.SIZE;
+
+    private final long[] rows;
     @Getter
     private final byte planeCount;
     private final int minX;
@@ -17,44 +23,62 @@ public class FlagMap {
         this.minX = minX;
         this.minY = minY;
         this.planeCount = planeCount;
-        flags = new BitSet(REGION_SIZE * REGION_SIZE * planeCount * FLAG_COUNT);
+        rows = new long[planeCount * FLAG_COUNT * REGION_SIZE];
     }
 
+    /** Reads the flags from their BitSet.toByteArray form in collision-map.zip */
     public FlagMap(int minX, int minY, byte[] bytes) {
-        this.minX = minX;
-        this.minY = minY;
-        flags = BitSet.valueOf(bytes);
-        int scale = REGION_SIZE * REGION_SIZE * FLAG_COUNT;
-        this.planeCount = (byte) ((flags.size() + scale - 1) / scale);
+        this(minX, minY, planeCount(bytes.length));
+
+        // Each row of a plane is 128 serialized bits, the two flags of every tile interleaved
+        final long[] words = new long[rows.length];
+        for (int i = 0; i < bytes.length; ++i) {
+            words[i >>> 3] |= (bytes[i] & 0xFFL) << ((i & 7) * Byte.SIZE);
+        }
+        for (int z = 0; z < planeCount; ++z) {
+            for (int y = 0; y < REGION_SIZE; ++y) {
+                final int word = (z * REGION_SIZE + y) * FLAG_COUNT;
+                for (int flag = 0; flag < FLAG_COUNT; ++flag) {
+                    rows[row(y, z, flag)] = evenBits(words[word] >>> flag) | evenBits(words[word + 1] >>> flag) << 32;
+                }
+            }
+        }
     }
 
-    public byte[] toBytes() {
-        return flags.toByteArray();
+    /** The number of planes of serialized flags with the given length */
+    static byte planeCount(int serializedLength) {
+        return (byte) ((serializedLength + SERIALIZED_BYTES_PER_PLANE - 1) / SERIALIZED_BYTES_PER_PLANE);
     }
 
     public boolean get(int x, int y, int z, int flag) {
-        if (x < minX || x >= (minX + REGION_SIZE) || y < minY || y >= (minY + REGION_SIZE) || z < 0 || z >= planeCount) {
-            return false;
-        }
+        return (rows[row(y - minY, z, flag)] >>> (x - minX) & 1) != 0;
+    }
 
-        return flags.get(index(x, y, z, flag));
+    /** Returns a flag of the 64 tiles of a row of the region, with bit x for the tile x tiles from its west edge */
+    public long getRow(int regionY, int z, int flag) {
+        return rows[row(regionY, z, flag)];
     }
 
     public void set(int x, int y, int z, int flag, boolean value) {
-        flags.set(index(x, y, z, flag), value);
-    }
-
-    private int index(int x, int y, int z, int flag) {
-        if (x < minX || x >= (minX + REGION_SIZE) || y < minY || y >= (minY + REGION_SIZE) || z < 0 || z >= planeCount || flag < 0 || flag >= FLAG_COUNT) {
-            throw new IndexOutOfBoundsException(
-                String.format(Locale.ENGLISH, "[%d,%d,%d,%d] when extents are [>=%d,>=%d,>=%d,>=%d] - [<=%d,<=%d,<%d,<%d]",
-                        x, y, z, flag,
-                        minX, minY, 0, 0,
-                        minX + REGION_SIZE - 1, minY + REGION_SIZE - 1, planeCount, FLAG_COUNT
-                )
-            );
+        final int row = row(y - minY, z, flag);
+        if (value) {
+            rows[row] |= 1L << (x - minX);
+        } else {
+            rows[row] &= ~(1L << (x - minX));
         }
+    }
+
+    private static int row(int regionY, int z, int flag) {
+        return (z * FLAG_COUNT + flag) * REGION_SIZE + regionY;
+    }
 
-        return (z * REGION_SIZE * REGION_SIZE + (y - minY) * REGION_SIZE + (x - minX)) * FLAG_COUNT + flag;
+    // Gathers bits 0, 2, ..., 62 of a word into its lowest 32 bits
+    private static long evenBits(long word) {
+        word &= 0x5555555555555555L;
+        word = (word | (word >>> 1)) & 0x3333333333333333L;
+        word = (word | (word >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        word = (word | (word >>> 4)) & 0x00FF00FF00FF00FFL;
+        word = (word | (word >>> 8)) & 0x0000FFFF0000FFFFL;
+        return (word | (word >>> 16)) & 0x00000000FFFFFFFFL;
     }
 }
@@ -0,0 +1,288 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import com.runepal.shortestpath.Transport;
+import com.runepal.shortestpath.WorldPointUtil;
+
+import static net.runelite.api.Constants.REGION_SIZE;
+
+/**
+ * Abstract graph for hierarchical (HPA*) searches. Each plane of a region is a cluster whose nodes are the
+ * entrances on its borders and the transport endpoints inside it, with the walking distances between them.
+ * Clusters are built the first time a search reaches them and shared by every search afterwards.
+ * Which transports connect the clusters depends on the player, so transport edges are read from the
+ * {@link PathfinderConfig} of each search instead of being stored here.
+ */
+public class HierarchicalGraph {
+    public static final int INFINITY = Integer.MAX_VALUE;
+    private static final OrdinalDirection[] DIRECTIONS = OrdinalDirection.values();
+    private static final int LONG_ENTRANCE = 6;
+
+    private final SplitFlagMap map;
+    private final Map<Integer, List<Integer>> clusterEndpoints = new HashMap<>();
+    // Transport origins are entered by stepping onto them from an adjacent tile, even when they are blocked
+    private final Map<Integer, List<Integer>> clusterOrigins = new HashMap<>();
+    private final Map<Integer, Cluster> clusters = new ConcurrentHashMap<>();
+
+    public HierarchicalGraph(SplitFlagMap map, Map<Integer, Set<Transport>> allTransports) {
+        this.map = map;
+
+        Set<Integer> origins = new HashSet<>();
+        Set<Integer> endpoints = new HashSet<>();
+        for (Set<Transport> transports : allTransports.values()) {
+            for (Transport transport : transports) {
+                if (transport.getOrigin() == Transport.UNDEFINED_ORIGIN) {
+                    continue; // Teleports are attached to the start of a search
+                }
+                origins.add(transport.getOrigin());
+                endpoints.add(transport.getOrigin());
+                endpoints.add(transport.getDestination());
+            }
+        }
+        for (int endpoint : endpoints) {
+            clusterEndpoints.computeIfAbsent(getClusterKey(endpoint), k -> new ArrayList<>()).add(endpoint);
+        }
+        for (int origin : origins) {
+            clusterOrigins.computeIfAbsent(getClusterKey(origin), k -> new ArrayList<>()).add(origin);
+        }
+    }
+
+    /** Identifies the region plane a tile belongs to */
+    public static int getClusterKey(int packedPoint) {
+        final int regionX = WorldPointUtil.unpackWorldX(packedPoint) / REGION_SIZE;
+        final int regionY = WorldPointUtil.unpackWorldY(packedPoint) / REGION_SIZE;
+        final int plane = WorldPointUtil.unpackWorldPlane(packedPoint);
+        return (regionX << 16 | regionY) << 2 | plane;
+    }
+
+    /** Index of a tile within its region plane, as used by {@link RegionSearch#copyDistances()} */
+    public static int localIndex(int packedPoint) {
+        return WorldPointUtil.unpackWorldY(packedPoint) % REGION_SIZE * REGION_SIZE + WorldPointUtil.unpackWorldX(packedPoint) % REGION_SIZE;
+    }
+
+    public Cluster getCluster(int packedPoint) {
+        return clusters.computeIfAbsent(getClusterKey(packedPoint), k -> buildCluster(packedPoint));
+    }
+
+    private Cluster buildCluster(int packedPoint) {
+        final int minX = WorldPointUtil.unpackWorldX(packedPoint) / REGION_SIZE * REGION_SIZE;
+        final int minY = WorldPointUtil.unpackWorldY(packedPoint) / REGION_SIZE * REGION_SIZE;
+        final int z = WorldPointUtil.unpackWorldPlane(packedPoint);
+
+        final List<Integer> nodes = new ArrayList<>();
+        final List<Integer> partners = new ArrayList<>();
+        addEntrances(nodes, partners, minX, minY, z, OrdinalDirection.WEST);
+        addEntrances(nodes, partners, minX, minY, z, OrdinalDirection.EAST);
+        addEntrances(nodes, partners, minX, minY, z, OrdinalDirection.SOUTH);
+        addEntrances(nodes, partners, minX, minY, z, OrdinalDirection.NORTH);
+        for (int endpoint : clusterEndpoints.getOrDefault(getClusterKey(packedPoint), Collections.emptyList())) {
+            if (!nodes.contains(endpoint)) {
+                nodes.add(endpoint);
+                partners.add(WorldPointUtil.UNDEFINED);
+            }
+        }
+
+        final int n = nodes.size();
+        final int[] nodeArray = new int[n];
+        final int[] partnerArray = new int[n];
+        for (int i = 0; i < n; ++i) {
+            nodeArray[i] = nodes.get(i);
+            partnerArray[i] = partners.get(i);
+        }
+
+        final int[] distances = new int[n * n];
+        final RegionSearch search = new RegionSearch();
+        for (int i = 0; i < n; ++i) {
+            search.run(nodeArray[i], null, false);
+            for (int j = 0; j < n; ++j) {
+                distances[i * n + j] = search.getDistance(nodeArray[j]);
+            }
+        }
+
+        return new Cluster(nodeArray, partnerArray, distances);
+    }
+
+    /**
+     * Entrances for each run of tiles that can be crossed into the neighbouring region: one in the middle,
+     * and one at each end of long runs so paths along the border are not forced through the middle.
+     * Crossings are always read from the west or south tile of a pair, so both regions agree on the entrances.
+     */
+    private void addEntrances(List<Integer> nodes, List<Integer> partners, int minX, int minY, int z, OrdinalDirection side) {
+        final boolean fromOutside = side.x < 0 || side.y < 0;
+        final int crossing = 1 << (side == OrdinalDirection.WEST ? OrdinalDirection.EAST
+            : side == OrdinalDirection.SOUTH ? OrdinalDirection.NORTH : side).ordinal();
+        int runStart = -1;
+        for (int i = 0; i <= REGION_SIZE; ++i) {
+            final int x = borderX(minX, side, i);
+            final int y = borderY(minY, side, i);
+            final boolean crossable = i < REGION_SIZE
+                && ((fromOutside ? map.getDirections(x + side.x, y + side.y, z) : map.getDirections(x, y, z)) & crossing) != 0;
+            if (crossable && runStart < 0) {
+                runStart = i;
+            } else if (!crossable && runStart >= 0) {
+                addEntrance(nodes, partners, minX, minY, z, side, (runStart + i - 1) / 2);
+                if (i - runStart >= LONG_ENTRANCE) {
+                    addEntrance(nodes, partners, minX, minY, z, side, runStart);
+                    addEntrance(nodes, partners, minX, minY, z, side, i - 1);
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private static void addEntrance(List<Integer> nodes, List<Integer> partners, int minX, int minY, int z, OrdinalDirection side, int i) {
+        final int x = borderX(minX, side, i);
+        final int y = borderY(minY, side, i);
+        nodes.add(WorldPointUtil.packWorldPoint(x, y, z));
+        partners.add(WorldPointUtil.packWorldPoint(x + side.x, y + side.y, z));
+    }
+
+    private static int borderX(int minX, OrdinalDirection side, int i) {
+        return side.x < 0 ? minX : side.x > 0 ? minX + REGION_SIZE - 1 : minX + i;
+    }
+
+    private static int borderY(int minY, OrdinalDirection side, int i) {
+        return side.y < 0 ? minY : side.y > 0 ? minY + REGION_SIZE - 1 : minY + i;
+    }
+
+    /** Abstract nodes of one region plane and the walking distances between them */
+    public static class Cluster {
+        private final int[] nodes;
+        // The tile across the region border for entrances, or UNDEFINED for transport endpoints
+        private final int[] partners;
+        // Row-major, INFINITY for nodes that cannot be walked between inside the region
+        private final int[] distances;
+
+        private Cluster(int[] nodes, int[] partners, int[] distances) {
+            this.nodes = nodes;
+            this.partners = partners;
+            this.distances = distances;
+        }
+
+        public int size() {
+            return nodes.length;
+        }
+
+        public int getNode(int index) {
+            return nodes[index];
+        }
+
+        public int getPartner(int index) {
+            return partners[index];
+        }
+
+        public int getDistance(int from, int to) {
+            return distances[from * nodes.length + to];
+        }
+
+        public int indexOf(int packedPoint) {
+            for (int i = 0; i < nodes.length; ++i) {
+                if (nodes[i] == packedPoint) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Breadth-first search confined to the region plane of its source, following the same moves as
+     * {@link CollisionMap#getNeighbors}. Used to build clusters, to connect tiles that are not abstract nodes
+     * and to refine an abstract path into tiles.
+     */
+    public class RegionSearch {
+        private final int[] distances = new int[REGION_SIZE * REGION_SIZE];
+        private final int[] previous = new int[REGION_SIZE * REGION_SIZE];
+        private final int[] queue = new int[REGION_SIZE * REGION_SIZE];
+        private final boolean[] origins = new boolean[REGION_SIZE * REGION_SIZE];
+        private int minX, minY, z;
+
+        /**
+         * Finds the walking distance from the source to every tile of its region plane.
+         * The config and avoidWilderness flag are optional and skip steps into the wilderness like a search would.
+         */
+        public void run(int source, PathfinderConfig config, boolean targetInWilderness) {
+            minX = WorldPointUtil.unpackWorldX(source) / REGION_SIZE * REGION_SIZE;
+            minY = WorldPointUtil.unpackWorldY(source) / REGION_SIZE * REGION_SIZE;
+            z = WorldPointUtil.unpackWorldPlane(source);
+            Arrays.fill(distances, INFINITY);
+            final List<Integer> regionOrigins = clusterOrigins.getOrDefault(getClusterKey(source), Collections.emptyList());
+            for (int origin : regionOrigins) {
+                origins[HierarchicalGraph.localIndex(origin)] = true;
+            }
+
+            final int sourceIndex = regionIndex(WorldPointUtil.unpackWorldX(source), WorldPointUtil.unpackWorldY(source));
+            distances[sourceIndex] = 0;
+            previous[sourceIndex] = -1;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = sourceIndex;
+            while (head < tail) {
+                final int index = queue[head++];
+                final int x = minX + index % REGION_SIZE;
+                final int y = minY + index / REGION_SIZE;
+                final int directions = map.getDirections(x, y, z);
+                for (OrdinalDirection d : DIRECTIONS) {
+                    final int nx = x + d.x;
+                    final int ny = y + d.y;
+                    if (nx < minX || ny < minY || nx >= minX + REGION_SIZE || ny >= minY + REGION_SIZE) {
+                        continue;
+                    }
+                    final int neighbor = regionIndex(nx, ny);
+                    if (distances[neighbor] != INFINITY) {
+                        continue;
+                    }
+                    final boolean walkable = (directions & (1 << d.ordinal())) != 0
+                        || origins[neighbor] && Math.abs(d.x + d.y) == 1 && map.isBlocked(nx, ny, z);
+                    if (!walkable || config != null && config.avoidWilderness(
+                        WorldPointUtil.packWorldPoint(x, y, z), WorldPointUtil.packWorldPoint(nx, ny, z), targetInWilderness)) {
+                        continue;
+                    }
+                    distances[neighbor] = distances[index] + 1;
+                    previous[neighbor] = index;
+                    queue[tail++] = neighbor;
+                }
+            }
+            for (int origin : regionOrigins) {
+                origins[HierarchicalGraph.localIndex(origin)] = false;
+            }
+        }
+
+        /** The distance to a tile from the last source, or INFINITY if it is unreachable or in another region plane */
+        public int getDistance(int packedPoint) {
+            final int x = WorldPointUtil.unpackWorldX(packedPoint);
+            final int y = WorldPointUtil.unpackWorldY(packedPoint);
+            if (WorldPointUtil.unpackWorldPlane(packedPoint) != z || x < minX || y < minY || x >= minX + REGION_SIZE || y >= minY + REGION_SIZE) {
+                return INFINITY;
+            }
+            return distances[regionIndex(x, y)];
+        }
+
+        /** The distances from the last source by {@link #localIndex(int)} */
+        public int[] copyDistances() {
+            return distances.clone();
+        }
+
+        /** Appends the tiles after the last source up to and including the given tile, which must be reachable */
+        public void appendPath(int packedPoint, List<Integer> path) {
+            final int start = path.size();
+            for (int index = regionIndex(WorldPointUtil.unpackWorldX(packedPoint), WorldPointUtil.unpackWorldY(packedPoint));
+                previous[index] != -1 || distances[index] != 0; index = previous[index]) {
+                path.add(WorldPointUtil.packWorldPoint(minX + index % REGION_SIZE, minY + index / REGION_SIZE, z));
+            }
+            Collections.reverse(path.subList(start, path.size()));
+        }
+
+        private int regionIndex(int x, int y) {
+            return (y - minY) * REGION_SIZE + (x - minX);
+        }
+    }
+}
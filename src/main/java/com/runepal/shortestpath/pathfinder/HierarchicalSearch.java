@@ -0,0 +1,191 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import com.runepal.shortestpath.Transport;
+import com.runepal.shortestpath.WorldPointUtil;
+
+/**
+ * One search over the {@link HierarchicalGraph}: Dijkstra over the abstract nodes from the start to the
+ * targets, after which only the walking segments on the way are refined into tiles. The start and the
+ * targets are connected to the nodes of their clusters with a search of their region, and so are
+ * transport destinations that are not nodes, such as where teleports arrive.
+ */
+class HierarchicalSearch {
+    private static final int WALK = 0;
+    private static final int STEP = 1;
+    private static final int TRANSPORT = 2;
+
+    private final PathfinderConfig config;
+    private final TransportTable transports;
+    private final HierarchicalGraph graph;
+    private final int start;
+    private final int[] targets;
+    private final boolean targetInWilderness;
+    private final Transport[] startTeleports;
+    private final HierarchicalGraph.RegionSearch regionSearch;
+    // The walking distance from each tile of the target's region plane to the target
+    private final Map<Integer, int[]> targetDistances = new HashMap<>();
+
+    // Abstract nodes by id, with the best cost to reach them and how they were reached
+    private final Map<Integer, Integer> ids = new HashMap<>();
+    private int[] positions = new int[256];
+    private int[] costs = new int[256];
+    private int[] previous = new int[256];
+    private int[] edgeTypes = new int[256];
+    private final NodeHeap heap = new NodeHeap(256);
+
+    @Getter
+    private int nodesChecked;
+    @Getter
+    private int transportsChecked;
+
+    /** The start teleports are those usable at the start, at its wilderness level */
+    HierarchicalSearch(PathfinderConfig config, TransportTable transports, int start, int[] targets,
+        boolean targetInWilderness, Transport[] startTeleports) {
+        this.config = config;
+        this.transports = transports;
+        this.graph = config.getHierarchicalGraph();
+        this.start = start;
+        this.targets = targets;
+        this.targetInWilderness = targetInWilderness;
+        this.startTeleports = startTeleports;
+        this.regionSearch = graph.new RegionSearch();
+    }
+
+    /**
+     * Returns the path from the start to the closest target, or null if none was found or a walking segment
+     * could not be refined, in which case the caller should fall back to searching tile by tile.
+     */
+    List<Integer> run(Pathfinder pathfinder) {
+        for (int target : targets) {
+            // Walking distances are symmetric apart from stepping onto blocked transport origins
+            regionSearch.run(target, null, false);
+            targetDistances.put(target, regionSearch.copyDistances());
+        }
+
+        relax(start, 0, -1, WALK);
+        while (!heap.isEmpty()) {
+            if (pathfinder.isCancelled()) {
+                return null;
+            }
+            final int cost = heap.peekCost();
+            final int id = heap.poll();
+            if (cost > costs[id]) {
+                continue;
+            }
+            ++nodesChecked;
+            final int position = positions[id];
+            for (int target : targets) {
+                if (position == target) {
+                    return refine(id);
+                }
+            }
+            expand(id, position, cost);
+        }
+        return null;
+    }
+
+    private void expand(int id, int position, int cost) {
+        final HierarchicalGraph.Cluster cluster = graph.getCluster(position);
+        final int index = cluster.indexOf(position);
+        if (index >= 0) {
+            for (int i = 0; i < cluster.size(); ++i) {
+                final int distance = cluster.getDistance(index, i);
+                if (distance != HierarchicalGraph.INFINITY && i != index) {
+                    relax(cluster.getNode(i), cost + distance, id, WALK);
+                }
+            }
+            if (cluster.getPartner(index) != WorldPointUtil.UNDEFINED) {
+                relax(cluster.getPartner(index), cost + 1, id, STEP);
+            }
+        } else {
+            // Not a node of its cluster, so walk to the nodes from here
+            regionSearch.run(position, null, false);
+            for (int i = 0; i < cluster.size(); ++i) {
+                final int distance = regionSearch.getDistance(cluster.getNode(i));
+                if (distance != HierarchicalGraph.INFINITY && distance > 0) {
+                    relax(cluster.getNode(i), cost + distance, id, WALK);
+                }
+            }
+        }
+
+        final int clusterKey = HierarchicalGraph.getClusterKey(position);
+        for (int target : targets) {
+            if (HierarchicalGraph.getClusterKey(target) == clusterKey) {
+                final int distance = targetDistances.get(target)[HierarchicalGraph.localIndex(position)];
+                if (distance != HierarchicalGraph.INFINITY) {
+                    relax(target, cost + distance, id, WALK);
+                }
+            }
+        }
+
+        final int slot = transports.find(position);
+        if (slot != TransportTable.NONE) {
+            for (int i = transports.getStart(slot), end = transports.getEnd(slot); i < end; ++i) {
+                final Transport transport = transports.get(i);
+                ++transportsChecked;
+                relax(transport.getDestination(), cost + transport.getDuration(), id, TRANSPORT);
+            }
+        }
+        if (position == start) {
+            for (Transport teleport : startTeleports) {
+                ++transportsChecked;
+                relax(teleport.getDestination(), cost + teleport.getDuration(), id, TRANSPORT);
+            }
+        }
+    }
+
+    private void relax(int position, int cost, int from, int edgeType) {
+        if (from >= 0 && config.avoidWilderness(positions[from], position, targetInWilderness)) {
+            return;
+        }
+
+        Integer id = ids.get(position);
+        if (id == null) {
+            id = ids.size();
+            ids.put(position, id);
+            if (id == positions.length) {
+                positions = Arrays.copyOf(positions, id * 2);
+                costs = Arrays.copyOf(costs, id * 2);
+                previous = Arrays.copyOf(previous, id * 2);
+                edgeTypes = Arrays.copyOf(edgeTypes, id * 2);
+            }
+            positions[id] = position;
+        } else if (cost >= costs[id]) {
+            return;
+        }
+        costs[id] = cost;
+        previous[id] = from;
+        edgeTypes[id] = edgeType;
+        heap.add(id, cost);
+    }
+
+    private List<Integer> refine(int last) {
+        final List<Integer> abstractPath = new ArrayList<>();
+        for (int id = last; id >= 0; id = previous[id]) {
+            abstractPath.add(id);
+        }
+
+        final List<Integer> path = new ArrayList<>();
+        path.add(start);
+        for (int i = abstractPath.size() - 2; i >= 0; --i) {
+            final int id = abstractPath.get(i);
+            if (edgeTypes[id] != WALK) {
+                path.add(positions[id]);
+                continue;
+            }
+            // The cached distances ignore the wilderness, so avoiding it can make a segment longer or impossible
+            regionSearch.run(positions[previous[id]], config, targetInWilderness);
+            if (regionSearch.getDistance(positions[id]) == HierarchicalGraph.INFINITY) {
+                return null;
+            }
+            regionSearch.appendPath(positions[id], path);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,55 @@
+package com.runepal.shortestpath.pathfinder;
+
+/** Growable FIFO ring buffer of ints; a replacement for ArrayDeque&lt;Integer&gt; without boxing */
+public class IntQueue {
+    private int[] elements;
+    private int head = 0;
+    private int size = 0;
+
+    public IntQueue(int initialCapacity) {
+        // Power of two so indices can wrap with a mask
+        elements = new int[Integer.highestOneBit(Math.max(initialCapacity, 2) - 1) << 1];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void add(int value) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = value;
+        ++size;
+    }
+
+    public int peek() {
+        return elements[head];
+    }
+
+    public int poll() {
+        final int value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        --size;
+        return value;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        int[] grown = new int[elements.length * 2];
+        final int tail = elements.length - head;
+        System.arraycopy(elements, head, grown, 0, tail);
+        System.arraycopy(elements, 0, grown, tail, head);
+        elements = grown;
+        head = 0;
+    }
+
+}
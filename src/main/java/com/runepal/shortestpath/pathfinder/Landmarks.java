@@ -0,0 +1,181 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import com.runepal.shortestpath.Transport;
+import com.runepal.shortestpath.WorldPointUtil;
+
+import static net.runelite.api.Constants.REGION_SIZE;
+
+/**
+ * Distances from a few landmark tiles over the walking and transport graph, precomputed by LandmarkGenerator.
+ * By the triangle inequality the cost between two tiles is at least the difference of their distances to
+ * any landmark (ALT). Distances are kept per cell of CELL_SIZE x CELL_SIZE tiles as the lowest and highest
+ * distance of the tiles in the cell, which keeps the resource small at the price of a looser bound.
+ */
+@Slf4j
+public class Landmarks {
+    static final String RESOURCE_PATH = "/landmarks.bin";
+    static final int VERSION = 1;
+    static final int CELL_SIZE = 16;
+    static final int CELLS_PER_SIDE = REGION_SIZE / CELL_SIZE;
+    static final int CELLS_PER_PLANE = CELLS_PER_SIDE * CELLS_PER_SIDE;
+    /** No tile of the cell is reachable (lowest), or some tile of the cell is not reachable (highest) */
+    static final int UNKNOWN = 0xFFFF;
+
+    @Getter
+    private final int[] landmarks;
+    private final SplitFlagMap.RegionExtent regionExtents;
+    private final int widthInclusive;
+    // The first cell of each region, or -1 for regions without distances
+    private final int[] regionCells;
+    private final byte[] regionPlanes;
+    // Indexed by cell * landmark count + landmark
+    private final char[] lowest;
+    private final char[] highest;
+    @Getter
+    private final int cellCount;
+
+    private Landmarks(int[] landmarks, int[] regionCells, byte[] regionPlanes, char[] lowest, char[] highest) {
+        this.landmarks = landmarks;
+        this.regionExtents = SplitFlagMap.getRegionExtents();
+        this.widthInclusive = regionExtents.getWidth() + 1;
+        this.regionCells = regionCells;
+        this.regionPlanes = regionPlanes;
+        this.lowest = lowest;
+        this.highest = highest;
+        this.cellCount = lowest.length / landmarks.length;
+    }
+
+    /**
+     * Returns the cell containing a tile, from 0 to the cell count, or -1 if there are no distances for it.
+     * Pass the results to {@link #lowerBound(int, int)}.
+     */
+    public int getCell(int packedPoint) {
+        final int x = WorldPointUtil.unpackWorldX(packedPoint);
+        final int y = WorldPointUtil.unpackWorldY(packedPoint);
+        final int z = WorldPointUtil.unpackWorldPlane(packedPoint);
+        final int regionX = x / REGION_SIZE - regionExtents.getMinX();
+        final int regionY = y / REGION_SIZE - regionExtents.getMinY();
+        if (regionX < 0 || regionX >= widthInclusive || regionY < 0 || regionY * widthInclusive >= regionCells.length) {
+            return -1;
+        }
+
+        final int index = regionY * widthInclusive + regionX;
+        if (regionCells[index] < 0 || z >= regionPlanes[index]) {
+            return -1;
+        }
+
+        return regionCells[index] + z * CELLS_PER_PLANE
+            + (y % REGION_SIZE) / CELL_SIZE * CELLS_PER_SIDE + (x % REGION_SIZE) / CELL_SIZE;
+    }
+
+    /** Lower bound on the cost between two tiles in the given cells, without using teleports */
+    public int lowerBound(int fromCell, int toCell) {
+        if (fromCell < 0 || toCell < 0) {
+            return 0;
+        }
+
+        final int from = fromCell * landmarks.length;
+        final int to = toCell * landmarks.length;
+        int bound = 0;
+        for (int i = 0; i < landmarks.length; ++i) {
+            final int fromLowest = lowest[from + i];
+            final int fromHighest = highest[from + i];
+            final int toLowest = lowest[to + i];
+            final int toHighest = highest[to + i];
+            if (fromHighest != UNKNOWN && toLowest != UNKNOWN) {
+                bound = Math.max(bound, toLowest - fromHighest);
+            }
+            if (toHighest != UNKNOWN && fromLowest != UNKNOWN) {
+                bound = Math.max(bound, fromLowest - toHighest);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Identifies the collision map and transports the distances were computed from.
+     * Teleports are left out since they are not part of the landmark graph.
+     */
+    static long checksum(SplitFlagMap map, Map<Integer, Set<Transport>> transports) {
+        long checksum = map.getChecksum();
+        for (Set<Transport> origin : transports.values()) {
+            for (Transport transport : origin) {
+                if (transport.getOrigin() != Transport.UNDEFINED_ORIGIN) {
+                    // Summed so the iteration order of the sets does not matter
+                    checksum += mix(((long) transport.getOrigin() << 32 | transport.getDestination() & 0xFFFFFFFFL)
+                        ^ (long) transport.getDuration() * 0x9E3779B97F4A7C15L);
+                }
+            }
+        }
+        return checksum;
+    }
+
+    static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    /**
+     * Loads the distances shipped with the plugin. Returns null if they are missing or were computed from
+     * a different collision map or different transports, since the bound could then overestimate.
+     */
+    public static Landmarks fromResources(SplitFlagMap map, Map<Integer, Set<Transport>> transports) {
+        InputStream resource = Landmarks.class.getResourceAsStream(RESOURCE_PATH);
+        if (resource == null) {
+            log.warn("Missing {}, the A* heuristic will not use landmarks", RESOURCE_PATH);
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(resource))) {
+            if (in.readInt() != VERSION || in.readLong() != checksum(map, transports)) {
+                log.warn("{} is out of date, run the generateLandmarks task", RESOURCE_PATH);
+                return null;
+            }
+
+            final int[] landmarks = new int[in.readInt()];
+            for (int i = 0; i < landmarks.length; ++i) {
+                landmarks[i] = in.readInt();
+            }
+
+            final SplitFlagMap.RegionExtent regionExtents = SplitFlagMap.getRegionExtents();
+            final int widthInclusive = regionExtents.getWidth() + 1;
+            final int[] regionCells = new int[widthInclusive * (regionExtents.getHeight() + 1)];
+            final byte[] regionPlanes = new byte[regionCells.length];
+            Arrays.fill(regionCells, -1);
+
+            final int regionCount = in.readInt();
+            final int cellCount = in.readInt();
+            final char[] lowest = new char[cellCount * landmarks.length];
+            final char[] highest = new char[cellCount * landmarks.length];
+            int cell = 0;
+            for (int i = 0; i < regionCount; ++i) {
+                final int regionX = in.readUnsignedShort();
+                final int regionY = in.readUnsignedShort();
+                final int planes = in.readUnsignedByte();
+                final int index = (regionX - regionExtents.getMinX()) + (regionY - regionExtents.getMinY()) * widthInclusive;
+                regionCells[index] = cell;
+                regionPlanes[index] = (byte) planes;
+                for (int j = 0, n = planes * CELLS_PER_PLANE * landmarks.length; j < n; ++j) {
+                    lowest[cell * landmarks.length + j] = in.readChar();
+                    highest[cell * landmarks.length + j] = in.readChar();
+                }
+                cell += planes * CELLS_PER_PLANE;
+            }
+
+            return new Landmarks(landmarks, regionCells, regionPlanes, lowest, highest);
+        } catch (IOException e) {
+            log.warn("Unable to read " + RESOURCE_PATH, e);
+            return null;
+        }
+    }
+}
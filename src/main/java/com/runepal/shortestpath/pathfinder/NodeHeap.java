@@ -0,0 +1,82 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.Arrays;
+
+/** Binary min-heap of node indices keyed by cost; a replacement for PriorityQueue&lt;Node&gt; without boxing */
+public class NodeHeap {
+    private int[] nodes;
+    private int[] costs;
+    private int size = 0;
+
+    public NodeHeap(int initialCapacity) {
+        nodes = new int[Math.max(initialCapacity, 2)];
+        costs = new int[nodes.length];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void add(int node, int cost) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            costs = Arrays.copyOf(costs, costs.length * 2);
+        }
+
+        int i = size++;
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (costs[parent] <= cost) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            costs[i] = costs[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        costs[i] = cost;
+    }
+
+    /** Returns the cheapest node; the heap must not be empty */
+    public int peek() {
+        return nodes[0];
+    }
+
+    /** Returns the cost of the cheapest node; the heap must not be empty */
+    public int peekCost() {
+        return costs[0];
+    }
+
+    public int poll() {
+        final int top = nodes[0];
+        final int lastNode = nodes[--size];
+        final int lastCost = costs[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && costs[child + 1] < costs[child]) {
+                ++child;
+            }
+            if (lastCost <= costs[child]) {
+                break;
+            }
+            nodes[i] = nodes[child];
+            costs[i] = costs[child];
+            i = child;
+        }
+        nodes[i] = lastNode;
+        costs[i] = lastCost;
+        return top;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
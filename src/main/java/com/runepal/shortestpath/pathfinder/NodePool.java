@@ -0,0 +1,122 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import com.runepal.shortestpath.WorldPointUtil;
+
+/**
+ * Struct-of-arrays store for the nodes of a search. A node is an index into parallel arrays
+ * holding its packed position, the index of its previous node and its cost.
+ * The arrays are kept between searches so repeated searches on the same thread allocate nothing.
+ */
+public class NodePool {
+    public static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private int[] previous = new int[INITIAL_CAPACITY];
+    private int[] costs = new int[INITIAL_CAPACITY];
+    private boolean[] transports = new boolean[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public int size() {
+        return size;
+    }
+
+    public int getPosition(int node) {
+        return positions[node];
+    }
+
+    public int getPrevious(int node) {
+        return previous[node];
+    }
+
+    public int getCost(int node) {
+        return costs[node];
+    }
+
+    /** Whether the node was reached by a transport, which is queued by cost rather than in walking order */
+    public boolean isTransport(int node) {
+        return transports[node];
+    }
+
+    /** Adds a node whose cost is the walking distance from the previous node */
+    public int add(int packedPosition, int previousNode) {
+        int cost = 0;
+        if (previousNode != NONE) {
+            // Travel wait time in transport nodes and distance is compared as if the player is walking 1 tile/tick.
+            // TODO: reduce the distance if the player is currently running and has enough run energy for the distance?
+            cost = costs[previousNode] + WorldPointUtil.distanceBetween(positions[previousNode], packedPosition);
+        }
+        return add(packedPosition, previousNode, cost, false);
+    }
+
+    /** Adds a node reached by a transport with the given travel time */
+    public int addTransport(int packedPosition, int previousNode, int travelTime) {
+        int cost = (previousNode != NONE ? costs[previousNode] : 0) + travelTime;
+        return add(packedPosition, previousNode, cost, true);
+    }
+
+    private int add(int packedPosition, int previousNode, int cost, boolean transport) {
+        if (size == positions.length) {
+            grow();
+        }
+        positions[size] = packedPosition;
+        previous[size] = previousNode;
+        costs[size] = cost;
+        transports[size] = transport;
+        return size++;
+    }
+
+    /** Copies a node over another one, so nodes that were rejected can be dropped with {@link #truncate(int)} */
+    public void move(int from, int to) {
+        positions[to] = positions[from];
+        previous[to] = previous[from];
+        costs[to] = costs[from];
+        transports[to] = transports[from];
+    }
+
+    /** Drops every node from the given index onwards */
+    public void truncate(int size) {
+        this.size = size;
+    }
+
+    /** The first node at a tile, or NONE; a linear scan, so only for a search that has ended */
+    public int indexOf(int packedPosition) {
+        for (int node = 0; node < size; ++node) {
+            if (positions[node] == packedPosition) {
+                return node;
+            }
+        }
+        return NONE;
+    }
+
+    /** Walks the previous node indices back to the start node */
+    public List<Integer> getPath(int node) {
+        int length = 0;
+        for (int n = node; n != NONE; n = previous[n]) {
+            ++length;
+        }
+
+        Integer[] path = new Integer[length];
+        for (int n = node; n != NONE; n = previous[n]) {
+            path[--length] = positions[n];
+        }
+
+        return new ArrayList<>(Arrays.asList(path));
+    }
+
+    /** Forgets all nodes but keeps the arrays for the next search */
+    public void clear() {
+        size = 0;
+    }
+
+    private void grow() {
+        final int capacity = positions.length * 2;
+        positions = Arrays.copyOf(positions, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        costs = Arrays.copyOf(costs, capacity);
+        transports = Arrays.copyOf(transports, capacity);
+    }
+}
@@ -0,0 +1,17 @@
+package com.runepal.shortestpath.pathfinder;
+
+/** Frontier of node indices waiting to be expanded, ordered (at least approximately) by cost */
+public interface NodeQueue {
+    /**
+     * Adds a node to the frontier.
+     * @param transport whether the node was reached by a transport rather than by walking to an adjacent tile
+     */
+    void add(int node, int cost, boolean transport);
+
+    /** Removes and returns the next node to expand; the queue must not be empty */
+    int poll();
+
+    boolean isEmpty();
+
+    void clear();
+}
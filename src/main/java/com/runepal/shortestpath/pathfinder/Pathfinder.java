@@ -1,16 +1,23 @@
 package com.runepal.shortestpath.pathfinder;
 
-import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import lombok.Getter;
+import com.runepal.shortestpath.QueueType;
+import com.runepal.shortestpath.SearchAlgorithm;
+import com.runepal.shortestpath.Transport;
 import com.runepal.shortestpath.WorldPointUtil;
 
 public class Pathfinder implements Runnable {
+    private static final Transport[] NO_TELEPORTS = new Transport[0];
+    // How often the path to the closest tile so far is published while searching tile by tile
+    private static final long PUBLISH_INTERVAL_MILLIS = 100;
+    // How many tiles are expanded between reads of the clock for the cutoff and publishing
+    private static final int TIME_CHECK_INTERVAL = 256;
+
     private PathfinderStats stats;
     private volatile boolean done = false;
     private volatile boolean cancelled = false;
@@ -22,20 +29,45 @@ public class Pathfinder implements Runnable {
 
     private final PathfinderConfig config;
     private final CollisionMap map;
+    // The usable transports when the search was created, so a refresh during the search does not change them
+    private final TransportTable transports;
     private final boolean targetInWilderness;
-
-    // Capacities should be enough to store all nodes without requiring the queue to grow
-    // They were found by checking the max queue size
-    private final Deque<Node> boundary = new ArrayDeque<>(4096);
-    private final Queue<Node> pending = new PriorityQueue<>(256);
-    private final VisitedTiles visited;
+    /** A* orders the queue by cost plus heuristic and expands a tile again when it is reached at a lower cost */
+    private final boolean aStar;
+    /** Hierarchical searches try the abstract graph of region entrances first and search tile by tile if that fails */
+    private final boolean hierarchical;
+    /** Bidirectional searches also search back from the targets on a second thread, until the two meet */
+    private final boolean bidirectional;
+    private final int[] targetArray;
+    // Finds the closest target to a tile without looking at every target
+    private final TargetIndex targetIndex;
+    /**
+     * Lower bounds on the cost of any path to a target whose last transport is a transport or a teleport.
+     * Teleports are only attached where the wilderness level drops, so they are left out of the heuristic
+     * once the search has left the wilderness and can no longer use them.
+     */
+    private int transportBound;
+    private int teleportBound;
+    private boolean teleportsAttachable = true;
+    private final Landmarks landmarks;
+    private int[] targetCells;
+    // The landmark bound to the closest target per cell, computed when a cell is first reached
+    private int[] cellBounds;
+
+    private final NodeQueue queue;
+    // The same queue when searching with A*, to read the estimate of the node being expanded
+    private final BucketNodeQueue estimateQueue;
+    // Pooled per thread by the config and only valid while run() is executing
+    private NodePool nodes;
+    private VisitedTiles visited;
+    private TileCosts costs;
 
     @SuppressWarnings("unchecked") // Casting EMPTY_LIST is safe here
-    private List<Integer> path = (List<Integer>)Collections.EMPTY_LIST;
-    private boolean pathNeedsUpdate = false;
-    private Node bestLastNode;
+    private volatile List<Integer> path = (List<Integer>)Collections.EMPTY_LIST;
+    private int bestLastNode = NodePool.NONE;
+    private volatile PartialPath partialPath;
     /**
-     * Teleportation transports are updated when this changes.
+     * Teleports are attached to the tile where this drops.
      * Can be either:
      *  0 = all teleports can be used (e.g. Chronicle)
      * 20 = most teleports can be used (e.g. Varrock Teleport)
@@ -43,14 +75,36 @@ public class Pathfinder implements Runnable {
      * 31 = no teleports can be used
      */
     private int wildernessLevel;
+    // Where the wilderness level dropped and the teleports attached there, at most one per level
+    private final int[] teleportOrigins = new int[3];
+    private final Transport[][] attachedTeleports = new Transport[3][];
+    private int attachedTeleportCount;
 
     public Pathfinder(PathfinderConfig config, int start, Set<Integer> targets) {
         stats = new PathfinderStats();
         this.config = config;
         this.map = config.getMap();
+        this.transports = config.getTransportTable();
         this.start = start;
         this.targets = targets;
-        visited = new VisitedTiles(map);
+        aStar = SearchAlgorithm.A_STAR.equals(config.getSearchAlgorithm());
+        hierarchical = SearchAlgorithm.HIERARCHICAL.equals(config.getSearchAlgorithm());
+        bidirectional = SearchAlgorithm.BIDIRECTIONAL.equals(config.getSearchAlgorithm());
+        // A* needs the queue ordered by estimated total cost, which the boundary does not provide
+        if (aStar) {
+            estimateQueue = new BucketNodeQueue(true);
+            queue = estimateQueue;
+        } else {
+            estimateQueue = null;
+            queue = QueueType.BUCKET.equals(config.getQueueType()) ? new BucketNodeQueue() : new BoundaryNodeQueue();
+        }
+        landmarks = config.getLandmarks();
+        targetArray = new int[targets.size()];
+        int i = 0;
+        for (int target : targets) {
+            targetArray[i++] = target;
+        }
+        targetIndex = new TargetIndex(targetArray);
         targetInWilderness = PathfinderConfig.isInWilderness(targets);
         wildernessLevel = 31;
     }
@@ -63,6 +117,10 @@ public class Pathfinder implements Runnable {
         cancelled = true;
     }
 
+    boolean isCancelled() {
+        return cancelled;
+    }
+
     public PathfinderStats getStats() {
         if (stats.started && stats.ended) {
             return stats;
@@ -72,123 +130,357 @@ public class Pathfinder implements Runnable {
         return null;
     }
 
+    /** The path is built from the node pool when the search ends, so it is empty until then */
     public List<Integer> getPath() {
-        Node lastNode = bestLastNode; // For thread safety, read bestLastNode once
-        if (lastNode == null) {
-            return path;
-        }
-
-        if (pathNeedsUpdate) {
-            path = lastNode.getPath();
-            pathNeedsUpdate = false;
-        }
-
         return path;
     }
 
-    private void addNeighbors(Node node) {
-        List<Node> nodes = map.getNeighbors(node, visited, config);
-        for (int i = 0; i < nodes.size(); ++i) {
-            Node neighbor = nodes.get(i);
+    /**
+     * The latest path published by the search, or null if it has published none yet. While searching tile by
+     * tile it is the path to the tile closest to the targets so far, at most every PUBLISH_INTERVAL_MILLIS,
+     * and when the search is done it is the final path.
+     */
+    public PartialPath getPartialPath() {
+        return partialPath;
+    }
+
+    private void publish(List<Integer> path, boolean complete) {
+        final PartialPath previous = partialPath;
+        partialPath = new PartialPath(previous != null ? previous.version + 1 : 1, path, complete);
+    }
 
-            if (config.avoidWilderness(node.packedPosition, neighbor.packedPosition, targetInWilderness)) {
+    private void addNeighbors(int node) {
+        final int packedPosition = nodes.getPosition(node);
+        final int first = nodes.size();
+        map.getNeighbors(node, nodes, visited, transports, getTeleports(packedPosition));
+        final int last = nodes.size();
+        // Neighbours A* rejects are dropped from the pool by moving the kept ones down
+        int kept = first;
+        for (int neighbor = first; neighbor < last; ++neighbor) {
+            final int neighborPosition = nodes.getPosition(neighbor);
+
+            if (config.avoidWilderness(packedPosition, neighborPosition, targetInWilderness)) {
                 continue;
             }
 
-            visited.set(neighbor.packedPosition);
-            if (neighbor instanceof TransportNode) {
-                pending.add(neighbor);
+            final boolean transport = nodes.isTransport(neighbor);
+            if (aStar) {
+                final int cost = nodes.getCost(neighbor);
+                if (cost >= costs.get(neighborPosition)) {
+                    continue;
+                }
+                final int heuristic = heuristic(neighborPosition);
+                if (heuristic == Integer.MAX_VALUE) {
+                    continue; // No target can be reached from here
+                }
+                costs.set(neighborPosition, cost);
+                nodes.move(neighbor, kept);
+                // The landmark bound is not consistent across cells, so never queue below the node being expanded
+                queue.add(kept++, Math.max(cost + heuristic, estimateQueue.getCurrentCost()), transport);
+            } else {
+                visited.set(neighborPosition);
+                queue.add(neighbor, nodes.getCost(neighbor), transport);
+            }
+            if (transport) {
                 ++stats.transportsChecked;
             } else {
-                boundary.addLast(neighbor);
                 ++stats.nodesChecked;
             }
         }
+        if (aStar) {
+            nodes.truncate(kept);
+        }
     }
 
     @Override
     public void run() {
         stats.start();
-        boundary.addFirst(new Node(start, null));
+        if (!config.canReach(start, targetArray, transports)) {
+            // No walk or usable transport leads to the targets, so searching would only run until the cutoff
+            publish(path, true);
+            done = !cancelled;
+            stats.end();
+            return;
+        }
+        if ((hierarchical && runHierarchical()) || (bidirectional && runBidirectional())) {
+            publish(path, true);
+            done = !cancelled;
+            stats.end();
+            return;
+        }
+
+        nodes = config.getNodePool();
+        visited = config.getVisitedTiles();
+        costs = aStar ? config.getTileCosts() : null;
+        if (aStar) {
+            computeTargetBounds();
+            costs.set(start, 0);
+            queue.add(nodes.add(start, NodePool.NONE), 0, false);
+        } else {
+            queue.add(nodes.add(start, NodePool.NONE), 0, false);
+        }
 
         int bestDistance = Integer.MAX_VALUE;
         long bestHeuristic = Integer.MAX_VALUE;
-        long cutoffDurationMillis = config.getCalculationCutoffMillis();
-        long cutoffTimeMillis = System.currentTimeMillis() + cutoffDurationMillis;
-
-        while (!cancelled && (!boundary.isEmpty() || !pending.isEmpty())) {
-            Node node = boundary.peekFirst();
-            Node p = pending.peek();
-
-            if (p != null && (node == null || p.cost < node.cost)) {
-                node = pending.poll();
-            } else {
-                node = boundary.removeFirst();
+        // With a node budget the search stops after expanding that many tiles without getting closer to the
+        // targets, so where it stops does not depend on how fast the machine is; otherwise after the time cutoff
+        final int nodeBudget = config.getNodeBudget();
+        final long cutoffDurationNanos = TimeUnit.MILLISECONDS.toNanos(config.getCalculationCutoffMillis());
+        final long publishIntervalNanos = TimeUnit.MILLISECONDS.toNanos(PUBLISH_INTERVAL_MILLIS);
+        long nowNanos = System.nanoTime();
+        long cutoffTimeNanos = nowNanos + cutoffDurationNanos;
+        long publishTimeNanos = nowNanos + publishIntervalNanos;
+        int publishedLastNode = NodePool.NONE;
+        int expanded = 0;
+        int improvedAt = 0;
+        boolean improved = false;
+
+        while (!cancelled && !queue.isEmpty()) {
+            final int node = queue.poll();
+            final int packedPosition = nodes.getPosition(node);
+
+            if (aStar && nodes.getCost(node) > costs.get(packedPosition)) {
+                continue; // The tile has been queued again at a lower cost since
             }
 
             if (wildernessLevel > 0) {
-                // We don't need to remove teleports when going from 20 to 21 or higher,
-                // because the teleport is either used at the very start of the
-                // path or when going from 31 or higher to 30, or from 21 or higher to 20.
-
-                boolean update = false;
-                
-                // These are overlapping boundaries, so if the node isn't in level 30, it's in 0-29
-                // likewise, if the node isn't in level 20, it's in 0-19
-                if (wildernessLevel > 30 && !PathfinderConfig.isInLevel30Wilderness(node.packedPosition)) {
-                    wildernessLevel = 30;
-                    update = true;
-                }
-                if (wildernessLevel > 20 && !PathfinderConfig.isInLevel20Wilderness(node.packedPosition)) {
-                    wildernessLevel = 20;
-                    update = true;
-                }
-                if (wildernessLevel > 0 && !PathfinderConfig.isInWilderness(node.packedPosition)) {
-                    wildernessLevel = 0;
-                    update = true;
-                }
-                if (update) {
-                    config.refreshTeleports(node.packedPosition, wildernessLevel);
-                }
+                updateWildernessLevel(packedPosition);
             }
 
-            if (targets.contains(node.packedPosition)) {
+            if (targets.contains(packedPosition)) {
                 bestLastNode = node;
-                pathNeedsUpdate = true;
                 break;
             }
 
-            for (int target : targets) {
-                int distance = WorldPointUtil.distanceBetween(node.packedPosition, target);
-                long heuristic = distance + (long) WorldPointUtil.distanceBetween(node.packedPosition, target, 2);
+            ++expanded;
+            final int target = targetIndex.closest(packedPosition);
+            if (target != WorldPointUtil.UNDEFINED) {
+                int distance = WorldPointUtil.distanceBetween(packedPosition, target);
+                long heuristic = distance + (long) WorldPointUtil.distanceBetween(packedPosition, target, 2);
                 if (heuristic < bestHeuristic || (heuristic <= bestHeuristic && distance < bestDistance)) {
                     bestLastNode = node;
-                    pathNeedsUpdate = true;
                     bestDistance = distance;
                     bestHeuristic = heuristic;
-                    cutoffTimeMillis = System.currentTimeMillis() + cutoffDurationMillis;
+                    improvedAt = expanded;
+                    improved = true;
                 }
             }
 
-            if (System.currentTimeMillis() > cutoffTimeMillis) {
+            if (nodeBudget > 0 && expanded - improvedAt > nodeBudget) {
+                stats.cutOff = true;
                 break;
             }
+            if (expanded % TIME_CHECK_INTERVAL == 0) {
+                nowNanos = System.nanoTime();
+                if (improved) {
+                    // Counted from the check after the improvement, which is at most an interval late
+                    cutoffTimeNanos = nowNanos + cutoffDurationNanos;
+                    improved = false;
+                } else if (nodeBudget <= 0 && nowNanos - cutoffTimeNanos > 0) {
+                    stats.cutOff = true;
+                    break;
+                }
+                if (nowNanos - publishTimeNanos >= 0 && bestLastNode != publishedLastNode) {
+                    publish(nodes.getPath(bestLastNode), false);
+                    publishedLastNode = bestLastNode;
+                    publishTimeNanos = nowNanos + publishIntervalNanos;
+                }
+            }
 
             addNeighbors(node);
         }
 
+        stats.nodesExpanded += expanded;
+        if (bestLastNode != NodePool.NONE) {
+            path = nodes.getPath(bestLastNode);
+        }
+        publish(path, true);
         done = !cancelled;
 
-        boundary.clear();
+        queue.clear();
         visited.clear();
-        pending.clear();
+        visited = null;
+        if (costs != null) {
+            costs.clear();
+            costs = null;
+        }
+        nodes.clear();
+        nodes = null;
 
         stats.end(); // Include cleanup in stats to get the total cost of pathfinding
     }
 
+    private void updateWildernessLevel(int packedPosition) {
+        // We don't need to remove teleports when going from 20 to 21 or higher,
+        // because the teleport is either used at the very start of the
+        // path or when going from 31 or higher to 30, or from 21 or higher to 20.
+
+        boolean update = false;
+        
+        // These are overlapping boundaries, so if the node isn't in level 30, it's in 0-29
+        // likewise, if the node isn't in level 20, it's in 0-19
+        final int wildernessFlags = wildernessLevel > 0 ? WildernessMap.getFlags(packedPosition) : 0;
+        if (wildernessLevel > 30 && (wildernessFlags & WildernessMap.LEVEL_30) == 0) {
+            wildernessLevel = 30;
+            update = true;
+        }
+        if (wildernessLevel > 20 && (wildernessFlags & WildernessMap.LEVEL_20) == 0) {
+            wildernessLevel = 20;
+            update = true;
+        }
+        if (wildernessLevel > 0 && (wildernessFlags & WildernessMap.WILDERNESS) == 0) {
+            wildernessLevel = 0;
+            update = true;
+        }
+        if (update) {
+            teleportOrigins[attachedTeleportCount] = packedPosition;
+            attachedTeleports[attachedTeleportCount++] = config.getTeleports(wildernessLevel);
+            if (wildernessLevel == 0) {
+                // Raises the heuristic, since no teleports can be attached after this
+                teleportsAttachable = false;
+            }
+        }
+    }
+
+    /** The teleports attached to a tile where the wilderness level dropped, or none */
+    private Transport[] getTeleports(int packedPosition) {
+        // The latest attachment has the lowest level and the most teleports
+        for (int i = attachedTeleportCount - 1; i >= 0; --i) {
+            if (teleportOrigins[i] == packedPosition) {
+                return attachedTeleports[i];
+            }
+        }
+        return NO_TELEPORTS;
+    }
+
+    /**
+     * Searches the hierarchical graph with the teleports usable at the start attached.
+     * Returns false if it found no path, which leaves the search to be done tile by tile.
+     */
+    private boolean runHierarchical() {
+        updateWildernessLevel(start);
+        final HierarchicalSearch search = new HierarchicalSearch(config, transports, start, targetArray, targetInWilderness,
+            getTeleports(start));
+        final List<Integer> hierarchicalPath = search.run(this);
+        stats.nodesChecked += search.getNodesChecked();
+        stats.transportsChecked += search.getTransportsChecked();
+        if (hierarchicalPath == null) {
+            return false;
+        }
+        path = hierarchicalPath;
+        return true;
+    }
+
+    /**
+     * Searches from the start and back from the targets at once. Returns false if they did not meet, or if the
+     * start is in the wilderness, where teleports are attached along the way, which leaves the search to be
+     * done from the start alone.
+     */
+    private boolean runBidirectional() {
+        if ((WildernessMap.getFlags(start) & WildernessMap.WILDERNESS) != 0) {
+            return false;
+        }
+        final BidirectionalSearch search = new BidirectionalSearch(config, transports, start, targetArray, targetInWilderness,
+            config.getTeleports(0));
+        final List<Integer> bidirectionalPath = search.run(this);
+        stats.nodesChecked += search.getNodesChecked();
+        stats.transportsChecked += search.getTransportsChecked();
+        if (bidirectionalPath == null) {
+            return false;
+        }
+        path = bidirectionalPath;
+        return true;
+    }
+
+    /**
+     * The cheapest way to reach a target through a transport is at least the duration of its last transport
+     * plus the walking distance from that transport's destination, so this is computed once per search.
+     */
+    private void computeTargetBounds() {
+        transportBound = Integer.MAX_VALUE;
+        teleportBound = Integer.MAX_VALUE;
+        targetCells = new int[targetArray.length];
+        for (int i = 0; i < targetArray.length; ++i) {
+            transportBound = Math.min(transportBound, transportBound(targetArray[i],
+                config.getTransportDestinations(), config.getTransportDurations()));
+            teleportBound = Math.min(teleportBound, transportBound(targetArray[i],
+                config.getTeleportDestinations(), config.getTeleportDurations()));
+            targetCells[i] = landmarks != null ? landmarks.getCell(targetArray[i]) : -1;
+        }
+        // Targets close together share a cell, which only needs to be bounded once
+        targetCells = Arrays.stream(targetCells).distinct().toArray();
+        if (landmarks != null) {
+            cellBounds = new int[landmarks.getCellCount()];
+            Arrays.fill(cellBounds, -1);
+        }
+    }
+
+    private static int transportBound(int target, int[] destinations, int[] durations) {
+        int bound = Integer.MAX_VALUE;
+        for (int i = 0; i < destinations.length; ++i) {
+            final int distance = WorldPointUtil.distanceBetween(destinations[i], target);
+            if (distance != Integer.MAX_VALUE) {
+                bound = Math.min(bound, durations[i] + distance);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Admissible lower bound on the remaining cost. Walking never covers more than one tile (Chebyshev distance)
+     * per tick, and walking to another plane or across the map needs a transport. Without teleports the cost
+     * is also at least the landmark bound, which takes walls, water and every transport into account.
+     * Returns Integer.MAX_VALUE if no target can be reached at all.
+     */
+    private int heuristic(int packedPosition) {
+        int best = Math.min(targetIndex.distance(packedPosition), transportBound);
+        if (best != Integer.MAX_VALUE) {
+            best = Math.max(best, landmarkBound(packedPosition));
+        }
+        return teleportsAttachable ? Math.min(best, teleportBound) : best;
+    }
+
+    private int landmarkBound(int packedPosition) {
+        final int cell = landmarks != null ? landmarks.getCell(packedPosition) : -1;
+        if (cell < 0) {
+            return 0;
+        }
+
+        if (cellBounds[cell] < 0) {
+            int bound = Integer.MAX_VALUE;
+            for (int targetCell : targetCells) {
+                bound = Math.min(bound, landmarks.lowerBound(cell, targetCell));
+            }
+            cellBounds[cell] = bound;
+        }
+        return cellBounds[cell];
+    }
+
+    /** A path published by a search, see {@link #getPartialPath()} */
+    @Getter
+    public static class PartialPath {
+        /** Counts the paths published by the search, starting from 1 */
+        private final int version;
+        private final List<Integer> path;
+        /** Whether this is the final path rather than the path to the tile closest to the targets so far */
+        private final boolean complete;
+
+        private PartialPath(int version, List<Integer> path, boolean complete) {
+            this.version = version;
+            this.path = Collections.unmodifiableList(path);
+            this.complete = complete;
+        }
+    }
+
     public static class PathfinderStats {
         @Getter
         private int nodesChecked = 0, transportsChecked = 0;
+        /** The tiles expanded by the search tile by tile, which the node budget counts */
+        @Getter
+        private int nodesExpanded = 0;
+        /** Whether the search stopped at the cutoff or node budget rather than at a target or with no tiles left */
+        @Getter
+        private boolean cutOff = false;
         private long startNanos, endNanos;
         private volatile boolean started = false, ended = false;
 
@@ -204,6 +496,8 @@ public class Pathfinder implements Runnable {
             started = true;
             nodesChecked = 0;
             transportsChecked = 0;
+            nodesExpanded = 0;
+            cutOff = false;
             startNanos = System.nanoTime();
         }
 
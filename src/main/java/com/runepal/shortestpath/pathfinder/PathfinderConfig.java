@@ -4,8 +4,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Set;
 import lombok.Getter;
 import net.runelite.api.Client;
@@ -21,13 +23,18 @@ import net.runelite.api.Quest;
 import net.runelite.api.QuestState;
 import net.runelite.api.Skill;
 import net.runelite.api.Varbits;
-import net.runelite.api.coords.WorldArea;
 import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.events.StatChanged;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.api.events.WidgetLoaded;
 import com.runepal.shortestpath.TeleportationItem;
 import com.runepal.BotConfig;
-import com.runepal.shortestpath.Destination;
-import com.runepal.shortestpath.PrimitiveIntHashMap;
+import com.runepal.shortestpath.QueueType;
+import com.runepal.shortestpath.SearchAlgorithm;
 import com.runepal.shortestpath.Transport;
+import com.runepal.shortestpath.TransportIndex;
 import com.runepal.shortestpath.TransportItems;
 import com.runepal.shortestpath.TransportType;
 import com.runepal.shortestpath.TransportVarbit;
@@ -54,21 +61,8 @@ import static com.runepal.shortestpath.TransportType.TELEPORTATION_SPELL;
 import static com.runepal.shortestpath.TransportType.WILDERNESS_OBELISK;
 
 public class PathfinderConfig {
-    private static final WorldArea WILDERNESS_ABOVE_GROUND = new WorldArea(2944, 3525, 448, 448, 0);
-    private static final WorldArea WILDERNESS_ABOVE_GROUND_LEVEL_20 = new WorldArea(2944, 3680, 448, 448, 0);
-    private static final WorldArea WILDERNESS_ABOVE_GROUND_LEVEL_30 = new WorldArea(2944, 3760, 448, 448, 0);
-    private static final WorldArea WILDERNESS_UNDERGROUND = new WorldArea(2944, 9918, 320, 442, 0);
-    private static final WorldArea WILDERNESS_UNDERGROUND_LEVEL_20 = new WorldArea(2944, 10075, 320, 442, 0);
-    private static final WorldArea WILDERNESS_UNDERGROUND_LEVEL_30 = new WorldArea(2944, 10155, 320, 442, 0);
-    private static final WorldArea FEROX_ENCLAVE_1 = new WorldArea(3123, 3622, 2, 10, 0);
-    private static final WorldArea FEROX_ENCLAVE_2 = new WorldArea(3125, 3617, 16, 23, 0);
-    private static final WorldArea FEROX_ENCLAVE_3 = new WorldArea(3138, 3636, 18, 10, 0);
-    private static final WorldArea FEROX_ENCLAVE_4 = new WorldArea(3141, 3625, 14, 11, 0);
-    private static final WorldArea FEROX_ENCLAVE_5 = new WorldArea(3141, 3619, 7, 6, 0);
-    private static final WorldArea NOT_WILDERNESS_1 = new WorldArea(2997, 3525, 34, 9, 0);
-    private static final WorldArea NOT_WILDERNESS_2 = new WorldArea(3005, 3534, 21, 10, 0);
-    private static final WorldArea NOT_WILDERNESS_3 = new WorldArea(3000, 3534, 5, 5, 0);
-    private static final WorldArea NOT_WILDERNESS_4 = new WorldArea(3031, 3525, 2, 2, 0);
+    // The wilderness levels at which the usable teleports change, from Pathfinder.wildernessLevel
+    private static final int[] WILDERNESS_LEVELS = {0, 20, 30, 31};
     private static final List<Integer> RUNE_POUCHES = Arrays.asList(
         ItemID.RUNE_POUCH, ItemID.RUNE_POUCH_L,
         ItemID.DIVINE_RUNE_POUCH, ItemID.DIVINE_RUNE_POUCH_L
@@ -81,14 +75,49 @@ public class PathfinderConfig {
         Varbits.RUNE_POUCH_AMOUNT1, Varbits.RUNE_POUCH_AMOUNT2, Varbits.RUNE_POUCH_AMOUNT3, Varbits.RUNE_POUCH_AMOUNT4,
         Varbits.RUNE_POUCH_AMOUNT5, Varbits.RUNE_POUCH_AMOUNT6
 	};
+    private static final Set<Integer> RUNE_POUCH_VARBITS = Set.of(
+        Varbits.RUNE_POUCH_RUNE1, Varbits.RUNE_POUCH_RUNE2, Varbits.RUNE_POUCH_RUNE3, Varbits.RUNE_POUCH_RUNE4,
+        Varbits.RUNE_POUCH_RUNE5, Varbits.RUNE_POUCH_RUNE6,
+        Varbits.RUNE_POUCH_AMOUNT1, Varbits.RUNE_POUCH_AMOUNT2, Varbits.RUNE_POUCH_AMOUNT3, Varbits.RUNE_POUCH_AMOUNT4,
+        Varbits.RUNE_POUCH_AMOUNT5, Varbits.RUNE_POUCH_AMOUNT6);
+    /**
+     * The client does not tell which vars the state of a quest is read from, so quest states are only checked
+     * again when a quest is completed: the quest points varp changes, or the quest completed scroll opens, which
+     * also covers miniquests. Quests that were only started are picked up at the next login.
+     */
+    private static final int QUEST_POINTS_VARP = 101;
+    private static final int QUEST_COMPLETED_GROUP_ID = 153;
+    private static final List<Quest> QUEST_LOCKED_TYPES = Arrays.asList(
+        Quest.FAIRYTALE_II__CURE_A_QUEEN, Quest.THE_GRAND_TREE, Quest.TREE_GNOME_VILLAGE);
     private static final Set<Integer> CURRENCIES = Set.of(
         ItemID.COINS_995, ItemID.TRADING_STICKS, ItemID.ECTOTOKEN, ItemID.WARRIOR_GUILD_TOKEN);
 
     private final SplitFlagMap mapData;
-    private final ThreadLocal<CollisionMap> map;
+    // Holds no state of its own, so every search thread shares it
+    private final CollisionMap map;
+    private final ThreadLocal<NodePool> nodePools = ThreadLocal.withInitial(NodePool::new);
+    private final ThreadLocal<VisitedTiles> visitedTiles;
+    private final ThreadLocal<TileCosts> tileCosts;
+    /** Precomputed distances for the A* heuristic, or null if they do not match the collision map and transports */
+    @Getter
+    private final Landmarks landmarks;
+    /** Region entrances and transport endpoints with the walking distances between them, built lazily */
+    @Getter
+    private final HierarchicalGraph hierarchicalGraph;
+    /** Costs to the registered hubs, so paths to them are found without searching */
+    @Getter
+    private final DistanceFields distanceFields;
+    /** The walkable components and their graph for the current transports, built by the first search needing them */
+    private ComponentMap componentMap;
+    private volatile ComponentMap.Graph componentGraph;
     /** All transports by origin. The WorldPointUtil.UNDEFINED key is used for transports centered on the player. */
     private final Map<Integer, Set<Transport>> allTransports;
     private final Set<Transport> usableTeleports;
+    /**
+     * The usable teleports at each wilderness level a search can drop to, see {@link #getTeleports(int)}.
+     * Replaced as a whole when the usable teleports change, and never modified, so searches can share them.
+     */
+    private volatile Transport[][] teleportsByWildernessLevel = new Transport[WILDERNESS_LEVELS.length][0];
     private final Map<String, Set<Integer>> allDestinations;
     private final Map<String, Set<Integer>> filteredDestinations;
     private final Map<Integer, Integer> itemsAndQuantities = new HashMap<>(28 + 11 + 4, 1.0f);
@@ -96,9 +125,9 @@ public class PathfinderConfig {
 
     @Getter
     private final Map<Integer, Set<Transport>> transports;
-    // Copy of transports with packed positions for the hotpath; lists are not copied and are the same reference in both maps
+    // Flat copy of transports for the hotpath, rebuilt whenever the usable transports change
     @Getter
-    private final PrimitiveIntHashMap<Set<Transport>> transportsPacked;
+    private volatile TransportTable transportTable = new TransportTable(Collections.emptyMap());
     /** Reference that points to either allDestinations or filteredDestinations */
     private Map<String, Set<Integer>> destinations;
 
@@ -107,8 +136,28 @@ public class PathfinderConfig {
 
     @Getter
     private long calculationCutoffMillis;
+    /** Tiles expanded without getting closer to the targets before a search stops, or 0 to use the time cutoff */
+    @Getter
+    private int nodeBudget;
     @Getter
     private boolean avoidWilderness;
+    @Getter
+    private QueueType queueType = QueueType.BOUNDARY;
+    @Getter
+    private SearchAlgorithm searchAlgorithm = SearchAlgorithm.BREADTH_FIRST;
+    /**
+     * Every usable transport destination with the shortest duration to reach it, and likewise for teleports.
+     * Any path using a transport costs at least the duration plus the distance from a destination,
+     * which gives A* an admissible bound for targets that are far away by walking.
+     */
+    @Getter
+    private int[] transportDestinations = new int[0];
+    @Getter
+    private int[] transportDurations = new int[0];
+    @Getter
+    private int[] teleportDestinations = new int[0];
+    @Getter
+    private int[] teleportDurations = new int[0];
     private boolean useAgilityShortcuts,
         useGrappleShortcuts,
         useBoats,
@@ -129,26 +178,96 @@ public class PathfinderConfig {
     private TeleportationItem useTeleportationItems;
     private int currencyThreshold;
     private final int[] boostedLevels = new int[Skill.values().length];
+    /**
+     * Changes whenever a refresh changes the settings or the usable transports, so results computed
+     * with an older version can be told apart. Hashes the transport sets, which use identity hashes
+     * of the shared Transport instances and do not depend on iteration order.
+     */
+    @Getter
+    private volatile int version;
+    private int stateHash;
+    private int transportsHash;
     private Map<Quest, QuestState> questStates = new HashMap<>();
     private Map<Integer, Integer> varbitValues = new HashMap<>();
     private Map<Integer, Integer> varPlayerValues = new HashMap<>();
 
+    // Transports by what their eligibility depends on, so changes only recheck the transports they affect
+    private final Map<Integer, List<Transport>> transportsByItem = new HashMap<>();
+    private final Map<Integer, List<Transport>> transportsByVarbit = new HashMap<>();
+    private final Map<Integer, List<Transport>> transportsByVarPlayer = new HashMap<>();
+    private final Map<Quest, List<Transport>> transportsByQuest = new HashMap<>();
+    private final List<List<Transport>> transportsBySkill = new ArrayList<>();
+    private final Set<Transport> eligibleTransports = new HashSet<>();
+    // Rechecked by the next refresh; events only record what changed, since they arrive far more often than paths
+    private final Set<Transport> changedTransports = new HashSet<>();
+    private boolean itemsChanged;
+    private boolean questsChanged;
+    private boolean transportsRefreshed;
+    private int settingsHash;
+
     public PathfinderConfig(Client client, BotConfig config) {
         this.client = client;
         this.config = config;
-        this.mapData = SplitFlagMap.fromResources();
-        this.map = ThreadLocal.withInitial(() -> new CollisionMap(mapData));
-        this.allTransports = Transport.loadAllFromResources();
+        this.mapData = SplitFlagMap.fromResources((long) config.spCollisionCacheSize() << 20);
+        this.map = new CollisionMap(mapData);
+        this.visitedTiles = ThreadLocal.withInitial(() -> new VisitedTiles(map));
+        this.tileCosts = ThreadLocal.withInitial(() -> new TileCosts(map));
+        this.distanceFields = new DistanceFields(mapData, map);
+        final TransportIndex transportIndex = TransportIndex.fromResources();
+        this.allTransports = transportIndex.getTransports();
+        this.landmarks = Landmarks.fromResources(mapData, allTransports);
+        this.hierarchicalGraph = new HierarchicalGraph(mapData, allTransports);
         this.usableTeleports = new HashSet<>(allTransports.size() / 20);
         this.transports = new HashMap<>(allTransports.size() / 2);
-        this.transportsPacked = new PrimitiveIntHashMap<>(allTransports.size() / 2);
-        this.allDestinations = Destination.loadAllFromResources();
+        this.allDestinations = transportIndex.getDestinations();
         this.filteredDestinations = filterDestinations(allDestinations);
+        indexTransports();
         this.destinations = allDestinations;
     }
 
     public CollisionMap getMap() {
-        return map.get();
+        return map;
+    }
+
+    /** The node pool of the calling thread, reused by every search that runs on it */
+    public NodePool getNodePool() {
+        return nodePools.get();
+    }
+
+    /** The visited tiles of the calling thread, which must be cleared when a search ends */
+    public VisitedTiles getVisitedTiles() {
+        return visitedTiles.get();
+    }
+
+    /** The tile costs of the calling thread, which must be cleared when a search ends */
+    public TileCosts getTileCosts() {
+        return tileCosts.get();
+    }
+
+    /**
+     * Whether the start might reach any of the targets by walking and the given transports, which is only false
+     * when that is certain. The walkable components are labelled by the first call, which takes a moment.
+     * Labelling reads every region, so it is skipped when regions are decoded on demand.
+     */
+    public boolean canReach(int start, int[] targets, TransportTable transports) {
+        if (mapData.isDecodedOnDemand()) {
+            return true;
+        }
+        ComponentMap.Graph graph = componentGraph;
+        if (graph == null || graph.getTransports() != transports) {
+            graph = getComponentGraph(transports);
+        }
+        return graph.canReach(start, targets);
+    }
+
+    private synchronized ComponentMap.Graph getComponentGraph(TransportTable transports) {
+        if (componentGraph == null || componentGraph.getTransports() != transports) {
+            if (componentMap == null) {
+                componentMap = new ComponentMap(mapData, allTransports);
+            }
+            componentGraph = componentMap.newGraph(transports, getTeleports(0));
+        }
+        return componentGraph;
     }
 
     public boolean hasDestination(String destinationType) {
@@ -161,7 +280,10 @@ public class PathfinderConfig {
 
     public void refresh() {
         calculationCutoffMillis = config.spCalculationCutoff() * Constants.GAME_TICK_LENGTH;
+        nodeBudget = Math.max(0, config.spNodeBudget());
         avoidWilderness = config.spAvoidWilderness();
+        queueType = config.spQueueType();
+        searchAlgorithm = config.spSearchAlgorithm();
         useAgilityShortcuts = config.spUseAgilityShortcuts();
         useGrappleShortcuts = config.spUseGrappleShortcuts();
         useBoats = config.spUseBoats();
@@ -181,32 +303,59 @@ public class PathfinderConfig {
         useTeleportationSpells = config.spUseTeleportationSpells();
         useWildernessObelisks = config.spUseWildernessObelisks();
         currencyThreshold = config.spCurrencyThreshold();
+        final int settings = Objects.hash(useAgilityShortcuts, useGrappleShortcuts, useBoats, useCanoes, useCharterShips,
+            useShips, useFairyRings, useGnomeGliders, useHotAirBalloons, useMinecarts, useQuetzals, useSpiritTrees,
+            useTeleportationItems, useTeleportationLevers, useTeleportationMinigames, useTeleportationPortals,
+            useTeleportationSpells, useWildernessObelisks, currencyThreshold);
 
         if (GameState.LOGGED_IN.equals(client.getGameState())) {
-            for (int i = 0; i < Skill.values().length; i++) {
-                boostedLevels[i] = client.getBoostedSkillLevel(Skill.values()[i]);
-            }
+            if (!transportsRefreshed || settings != settingsHash) {
+                for (int i = 0; i < Skill.values().length; i++) {
+                    boostedLevels[i] = client.getBoostedSkillLevel(Skill.values()[i]);
+                }
 
-            refreshTransports();
+                if (refreshTransports()) {
+                    settingsHash = settings;
+                }
+            } else {
+                refreshChangedTransports();
+            }
         }
 
         refreshDestinations();
-    }
 
-    /** Specialized method for only updating player-held item and spell transports */
-    public void refreshTeleports(int packedLocation, int wildernessLevel) {
-        Set<Transport> usableWildyTeleports = new HashSet<>(usableTeleports.size());
+        final int hash = Objects.hash(calculationCutoffMillis, nodeBudget, avoidWilderness, queueType, searchAlgorithm, transportsHash);
+        if (hash != stateHash) {
+            stateHash = hash;
+            ++version;
+        }
+    }
 
-        for (Transport teleport : usableTeleports) {
-            if (wildernessLevel <= teleport.getMaxWildernessLevel()) {
-                usableWildyTeleports.add(teleport);
+    /**
+     * The player-held item and spell teleports usable at a wilderness level, rounded up to 0, 20, 30 or 31.
+     * The array is shared and must not be modified.
+     */
+    public Transport[] getTeleports(int wildernessLevel) {
+        final Transport[][] teleports = teleportsByWildernessLevel;
+        for (int i = 0; i < WILDERNESS_LEVELS.length; ++i) {
+            if (wildernessLevel <= WILDERNESS_LEVELS[i]) {
+                return teleports[i];
             }
         }
+        return teleports[WILDERNESS_LEVELS.length - 1];
+    }
 
-        if (!usableWildyTeleports.isEmpty()) {
-            transports.put(packedLocation, usableWildyTeleports);
-            transportsPacked.put(packedLocation, usableWildyTeleports);
+    /** The teleports usable at a tile, by the wilderness level a search would drop to there */
+    public Transport[] getTeleportsAt(int packedPosition) {
+        final int flags = WildernessMap.getFlags(packedPosition);
+        if ((flags & WildernessMap.WILDERNESS) == 0) {
+            return getTeleports(0);
+        } else if ((flags & WildernessMap.LEVEL_20) == 0) {
+            return getTeleports(20);
+        } else if ((flags & WildernessMap.LEVEL_30) == 0) {
+            return getTeleports(30);
         }
+        return getTeleports(31);
     }
 
     private void refreshDestinations() {
@@ -256,37 +405,31 @@ public class PathfinderConfig {
         return filteredDestinations;
     }
 
-    private void refreshTransports() {
+    /** Rechecks every transport; returns false without doing anything when not called on the client thread */
+    private boolean refreshTransports() {
         if (!Thread.currentThread().equals(client.getClientThread())) {
-            return; // Has to run on the client thread; data will be refreshed when path finding commences
+            return false; // Has to run on the client thread; data will be refreshed when path finding commences
         }
 
-        useFairyRings &= !QuestState.NOT_STARTED.equals(getQuestState(Quest.FAIRYTALE_II__CURE_A_QUEEN));
-        useGnomeGliders &= QuestState.FINISHED.equals(getQuestState(Quest.THE_GRAND_TREE));
-        useSpiritTrees &= QuestState.FINISHED.equals(getQuestState(Quest.TREE_GNOME_VILLAGE));
+        refreshQuestStates();
+        applyQuestSettings();
+        for (int varbit : transportsByVarbit.keySet()) {
+            varbitValues.put(varbit, client.getVarbitValue(varbit));
+        }
+        for (int varPlayer : transportsByVarPlayer.keySet()) {
+            varPlayerValues.put(varPlayer, client.getVarpValue(varPlayer));
+        }
+        refreshItems();
 
         transports.clear();
-        transportsPacked.clear();
         usableTeleports.clear();
+        eligibleTransports.clear();
         for (Map.Entry<Integer, Set<Transport>> entry : allTransports.entrySet()) {
             int point = entry.getKey();
             Set<Transport> usableTransports = new HashSet<>(entry.getValue().size());
             for (Transport transport : entry.getValue()) {
-                for (Quest quest : transport.getQuests()) {
-                    try {
-                        questStates.put(quest, getQuestState(quest));
-                    } catch (NullPointerException ignored) {
-                    }
-                }
-
-                for (TransportVarbit varbitRequirement : transport.getVarbits()) {
-                    varbitValues.put(varbitRequirement.getId(), client.getVarbitValue(varbitRequirement.getId()));
-                }
-                for (TransportVarPlayer varPlayerRequirement : transport.getVarPlayers()) {
-                    varPlayerValues.put(varPlayerRequirement.getId(), client.getVarpValue(varPlayerRequirement.getId()));
-                }
-
                 if (useTransport(transport) && hasRequiredItems(transport)) {
+                    eligibleTransports.add(transport);
                     if (point == WorldPointUtil.UNDEFINED) {
                         usableTeleports.add(transport);
                     } else {
@@ -297,37 +440,250 @@ public class PathfinderConfig {
 
             if (point != WorldPointUtil.UNDEFINED && !usableTransports.isEmpty()) {
                 transports.put(point, usableTransports);
-                transportsPacked.put(point, usableTransports);
             }
         }
+
+        changedTransports.clear();
+        itemsChanged = false;
+        questsChanged = false;
+        transportsRefreshed = true;
+        transportsHash = transports.hashCode() * 31 + usableTeleports.hashCode();
+        transportTable = new TransportTable(transports);
+        refreshTransportDestinations();
+        refreshTeleportsByWildernessLevel();
+        return true;
+    }
+
+    /** Rechecks only the transports affected by the events since the last refresh */
+    private void refreshChangedTransports() {
+        if (!Thread.currentThread().equals(client.getClientThread())) {
+            return;
+        }
+
+        if (questsChanged) {
+            questsChanged = false;
+            if (!refreshQuestStates().isEmpty()) {
+                // Rare, and quests also gate whole transport types, so start over
+                refreshTransports();
+                return;
+            }
+        }
+        applyQuestSettings();
+        if (itemsChanged) {
+            itemsChanged = false;
+            for (int itemId : refreshItems()) {
+                changedTransports.addAll(transportsByItem.getOrDefault(itemId, Collections.emptyList()));
+            }
+        }
+        if (changedTransports.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> changedOrigins = new HashSet<>();
+        for (Transport transport : changedTransports) {
+            final boolean eligible = useTransport(transport) && hasRequiredItems(transport);
+            if (eligible ? eligibleTransports.add(transport) : eligibleTransports.remove(transport)) {
+                changedOrigins.add(transport.getOrigin());
+            }
+        }
+        changedTransports.clear();
+        if (changedOrigins.isEmpty()) {
+            return;
+        }
+
+        for (int origin : changedOrigins) {
+            Set<Transport> usableTransports = origin == WorldPointUtil.UNDEFINED ? usableTeleports : transports.get(origin);
+            if (usableTransports == null) {
+                usableTransports = new HashSet<>();
+                transports.put(origin, usableTransports);
+            }
+            usableTransports.clear();
+            for (Transport transport : allTransports.get(origin)) {
+                if (eligibleTransports.contains(transport)) {
+                    usableTransports.add(transport);
+                }
+            }
+        }
+        transportsHash = transports.hashCode() * 31 + usableTeleports.hashCode();
+        transportTable = new TransportTable(transports);
+        refreshTransportDestinations();
+        refreshTeleportsByWildernessLevel();
+    }
+
+    /** Indexes every transport by the items, varbits, varps, quests and skills its eligibility depends on */
+    private void indexTransports() {
+        for (int i = 0; i < Skill.values().length; i++) {
+            transportsBySkill.add(new ArrayList<>());
+        }
+        for (Set<Transport> origin : allTransports.values()) {
+            for (Transport transport : origin) {
+                for (TransportVarbit varbitRequirement : transport.getVarbits()) {
+                    transportsByVarbit.computeIfAbsent(varbitRequirement.getId(), k -> new ArrayList<>()).add(transport);
+                }
+                for (TransportVarPlayer varPlayerRequirement : transport.getVarPlayers()) {
+                    transportsByVarPlayer.computeIfAbsent(varPlayerRequirement.getId(), k -> new ArrayList<>()).add(transport);
+                }
+                for (Quest quest : transport.getQuests()) {
+                    transportsByQuest.computeIfAbsent(quest, k -> new ArrayList<>()).add(transport);
+                }
+                final int[] skillLevels = transport.getSkillLevels();
+                for (int i = 0; i < skillLevels.length; i++) {
+                    if (skillLevels[i] > 0) {
+                        transportsBySkill.get(i).add(transport);
+                    }
+                }
+                final TransportItems transportItems = transport.getItemRequirements();
+                if (transportItems != null) {
+                    indexItems(transport, transportItems.getItems());
+                    indexItems(transport, transportItems.getStaves());
+                    indexItems(transport, transportItems.getOffhands());
+                }
+            }
+        }
+    }
+
+    private void indexItems(Transport transport, int[][] itemIds) {
+        for (int[] alternatives : itemIds) {
+            if (alternatives != null) {
+                for (int itemId : alternatives) {
+                    transportsByItem.computeIfAbsent(itemId, k -> new ArrayList<>()).add(transport);
+                }
+            }
+        }
+    }
+
+    /** Updates the states of the quests transports depend on and returns the ones that changed */
+    private Set<Quest> refreshQuestStates() {
+        Set<Quest> changed = new HashSet<>();
+        for (Quest quest : transportsByQuest.keySet()) {
+            refreshQuestState(quest, changed);
+        }
+        for (Quest quest : QUEST_LOCKED_TYPES) {
+            refreshQuestState(quest, changed);
+        }
+        return changed;
+    }
+
+    private void refreshQuestState(Quest quest, Set<Quest> changed) {
+        try {
+            final QuestState state = getQuestState(quest);
+            if (!state.equals(questStates.put(quest, state))) {
+                changed.add(quest);
+            }
+        } catch (NullPointerException ignored) {
+        }
+    }
+
+    /** Transport types that need a quest on top of their setting */
+    private void applyQuestSettings() {
+        useFairyRings &= !QuestState.NOT_STARTED.equals(questStates.getOrDefault(Quest.FAIRYTALE_II__CURE_A_QUEEN, QuestState.NOT_STARTED));
+        useGnomeGliders &= QuestState.FINISHED.equals(questStates.get(Quest.THE_GRAND_TREE));
+        useSpiritTrees &= QuestState.FINISHED.equals(questStates.get(Quest.TREE_GNOME_VILLAGE));
+    }
+
+    /** Records an item container change; the inventory and equipment are read again by the next refresh */
+    public void onItemContainerChanged(ItemContainerChanged event) {
+        if (event.getContainerId() == InventoryID.INVENTORY.getId() || event.getContainerId() == InventoryID.EQUIPMENT.getId()) {
+            itemsChanged = true;
+        }
+    }
+
+    /** Records a varbit or varp change, which may also change rune pouch contents or complete a quest */
+    public void onVarbitChanged(VarbitChanged event) {
+        final int varbit = event.getVarbitId();
+        if (varbit != -1) {
+            final List<Transport> dependents = transportsByVarbit.get(varbit);
+            if (dependents != null) {
+                varbitValues.put(varbit, event.getValue());
+                changedTransports.addAll(dependents);
+            }
+            if (RUNE_POUCH_VARBITS.contains(varbit)) {
+                itemsChanged = true;
+            }
+        } else {
+            final List<Transport> dependents = transportsByVarPlayer.get(event.getVarpId());
+            if (dependents != null) {
+                varPlayerValues.put(event.getVarpId(), event.getValue());
+                changedTransports.addAll(dependents);
+            }
+            if (event.getVarpId() == QUEST_POINTS_VARP) {
+                questsChanged = true;
+            }
+        }
+    }
+
+    /** Records that a quest may have been completed, so the next refresh checks the quest states again */
+    public void onWidgetLoaded(WidgetLoaded event) {
+        if (event.getGroupId() == QUEST_COMPLETED_GROUP_ID) {
+            questsChanged = true;
+        }
+    }
+
+    /** Quest states are checked again after every login, which also picks up quests that were started */
+    public void onGameStateChanged(GameStateChanged event) {
+        if (event.getGameState() == GameState.LOGGED_IN) {
+            questsChanged = true;
+        }
+    }
+
+    public void onStatChanged(StatChanged event) {
+        final int skill = event.getSkill().ordinal();
+        if (boostedLevels[skill] != event.getBoostedLevel()) {
+            boostedLevels[skill] = event.getBoostedLevel();
+            changedTransports.addAll(transportsBySkill.get(skill));
+        }
+    }
+
+    private void refreshTransportDestinations() {
+        Map<Integer, Integer> shortestDurations = new HashMap<>();
+        for (Set<Transport> usableTransports : transports.values()) {
+            for (Transport transport : usableTransports) {
+                shortestDurations.merge(transport.getDestination(), transport.getDuration(), Math::min);
+            }
+        }
+        transportDestinations = new int[shortestDurations.size()];
+        transportDurations = new int[shortestDurations.size()];
+        toArrays(shortestDurations, transportDestinations, transportDurations);
+
+        shortestDurations.clear();
+        for (Transport teleport : usableTeleports) {
+            shortestDurations.merge(teleport.getDestination(), teleport.getDuration(), Math::min);
+        }
+        teleportDestinations = new int[shortestDurations.size()];
+        teleportDurations = new int[shortestDurations.size()];
+        toArrays(shortestDurations, teleportDestinations, teleportDurations);
+    }
+
+    private void refreshTeleportsByWildernessLevel() {
+        final Transport[][] teleports = new Transport[WILDERNESS_LEVELS.length][];
+        final List<Transport> usable = new ArrayList<>(usableTeleports.size());
+        for (int i = 0; i < WILDERNESS_LEVELS.length; ++i) {
+            usable.clear();
+            for (Transport teleport : usableTeleports) {
+                if (WILDERNESS_LEVELS[i] <= teleport.getMaxWildernessLevel()) {
+                    usable.add(teleport);
+                }
+            }
+            teleports[i] = usable.toArray(new Transport[0]);
+        }
+        teleportsByWildernessLevel = teleports;
+    }
+
+    private static void toArrays(Map<Integer, Integer> map, int[] keys, int[] values) {
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+            ++i;
+        }
     }
 
     public static boolean isInWilderness(WorldPoint p) {
-        return WILDERNESS_ABOVE_GROUND.distanceTo(p) == 0
-            && FEROX_ENCLAVE_1.distanceTo(p) != 0
-            && FEROX_ENCLAVE_2.distanceTo(p) != 0
-            && FEROX_ENCLAVE_3.distanceTo(p) != 0
-            && FEROX_ENCLAVE_4.distanceTo(p) != 0
-            && FEROX_ENCLAVE_5.distanceTo(p) != 0
-            && NOT_WILDERNESS_1.distanceTo(p) != 0
-            && NOT_WILDERNESS_2.distanceTo(p) != 0
-            && NOT_WILDERNESS_3.distanceTo(p) != 0
-            && NOT_WILDERNESS_4.distanceTo(p) != 0
-            || WILDERNESS_UNDERGROUND.distanceTo(p) == 0;
+        return isInWilderness(WorldPointUtil.packWorldPoint(p));
     }
 
     public static boolean isInWilderness(int packedPoint) {
-        return WorldPointUtil.distanceToArea(packedPoint, WILDERNESS_ABOVE_GROUND) == 0
-            && WorldPointUtil.distanceToArea(packedPoint, FEROX_ENCLAVE_1) != 0
-            && WorldPointUtil.distanceToArea(packedPoint, FEROX_ENCLAVE_2) != 0
-            && WorldPointUtil.distanceToArea(packedPoint, FEROX_ENCLAVE_3) != 0
-            && WorldPointUtil.distanceToArea(packedPoint, FEROX_ENCLAVE_4) != 0
-            && WorldPointUtil.distanceToArea(packedPoint, FEROX_ENCLAVE_5) != 0
-            && WorldPointUtil.distanceToArea(packedPoint, NOT_WILDERNESS_1) != 0
-            && WorldPointUtil.distanceToArea(packedPoint, NOT_WILDERNESS_2) != 0
-            && WorldPointUtil.distanceToArea(packedPoint, NOT_WILDERNESS_3) != 0
-            && WorldPointUtil.distanceToArea(packedPoint, NOT_WILDERNESS_4) != 0
-            || WorldPointUtil.distanceToArea(packedPoint, WILDERNESS_UNDERGROUND) == 0;
+        return (WildernessMap.getFlags(packedPoint) & WildernessMap.WILDERNESS) != 0;
     }
 
     public static boolean isInWilderness(Set<Integer> packedPoints) {
@@ -340,14 +696,11 @@ public class PathfinderConfig {
     }
 
     public static boolean isInLevel20Wilderness(int packedPoint) {
-        return WorldPointUtil.distanceToArea(packedPoint, WILDERNESS_ABOVE_GROUND_LEVEL_20) == 0
-            || WorldPointUtil.distanceToArea(packedPoint, WILDERNESS_UNDERGROUND_LEVEL_20) == 0;
+        return (WildernessMap.getFlags(packedPoint) & WildernessMap.LEVEL_20) != 0;
     }
 
-    public static boolean isInLevel30Wilderness(int packedPoint){
-        return WorldPointUtil.distanceToArea(packedPoint, WILDERNESS_ABOVE_GROUND_LEVEL_30) == 0
-            || WorldPointUtil.distanceToArea(packedPoint, WILDERNESS_UNDERGROUND_LEVEL_30) == 0;
-
+    public static boolean isInLevel30Wilderness(int packedPoint) {
+        return (WildernessMap.getFlags(packedPoint) & WildernessMap.LEVEL_30) != 0;
     }
 
     public boolean avoidWilderness(int packedPosition, int packedNeightborPosition, boolean targetInWilderness) {
@@ -473,17 +826,9 @@ public class PathfinderConfig {
         return true;
     }
 
-    /** Checks if the player has all the required equipment and inventory items for the transport */
-    private boolean hasRequiredItems(Transport transport) {
-        if ((TeleportationItem.ALL.equals(useTeleportationItems) ||
-            TeleportationItem.ALL_NON_CONSUMABLE.equals(useTeleportationItems)) &&
-            TransportType.TELEPORTATION_ITEM.equals(transport.getType())) {
-            return true;
-        }
-        if (TeleportationItem.NONE.equals(useTeleportationItems) &&
-            TransportType.TELEPORTATION_ITEM.equals(transport.getType())) {
-            return false;
-        }
+    /** Reads the inventory, equipment and rune pouch again and returns the ids of the items whose quantity changed */
+    private Set<Integer> refreshItems() {
+        final Map<Integer, Integer> previous = new HashMap<>(itemsAndQuantities);
         itemsAndQuantities.clear();
         ItemContainer inventory = client.getItemContainer(InventoryID.INVENTORY);
         ItemContainer equipment = client.getItemContainer(InventoryID.EQUIPMENT);
@@ -512,6 +857,28 @@ public class PathfinderConfig {
                 }
             }
         }
+
+        Set<Integer> changed = new HashSet<>();
+        for (Map.Entry<Integer, Integer> entry : itemsAndQuantities.entrySet()) {
+            if (!entry.getValue().equals(previous.remove(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        changed.addAll(previous.keySet());
+        return changed;
+    }
+
+    /** Checks if the player has all the required equipment and inventory items for the transport */
+    private boolean hasRequiredItems(Transport transport) {
+        if ((TeleportationItem.ALL.equals(useTeleportationItems) ||
+            TeleportationItem.ALL_NON_CONSUMABLE.equals(useTeleportationItems)) &&
+            TransportType.TELEPORTATION_ITEM.equals(transport.getType())) {
+            return true;
+        }
+        if (TeleportationItem.NONE.equals(useTeleportationItems) &&
+            TransportType.TELEPORTATION_ITEM.equals(transport.getType())) {
+            return false;
+        }
         boolean usingStaff = false;
         boolean usingOffhand = false;
         TransportItems transportItems = transport.getItemRequirements();
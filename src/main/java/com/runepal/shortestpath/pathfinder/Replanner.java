@@ -0,0 +1,235 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.Getter;
+import com.runepal.shortestpath.Transport;
+
+/**
+ * Keeps a search tree towards a set of targets, so the path can be repaired instead of searched again when the
+ * player leaves it or a move on it turns out to be blocked, in the spirit of D* Lite. The tree is a Dijkstra
+ * search backwards from the targets, holding the cost to the closest target and the next tile towards it for
+ * every tile it reached, and it only expands until the start is settled. A new start continues the same search
+ * until that tile is settled too, which costs nothing when it is near the old path. A blocked move only resets
+ * the tiles whose way to the targets led through it, which are then relaxed again from the tiles around them.
+ * Teleports are only used from the start. The first path builds the tree, which takes about as long as a search,
+ * so a replanner is only worth creating once a path needs repairing. Not thread-safe: only used on the
+ * pathfinding worker, one repair at a time.
+ */
+public class Replanner {
+    private static final Transport[] NO_TELEPORTS = new Transport[0];
+    // How many tiles are expanded between checks of the bound, the cutoff and cancellation
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final PathfinderConfig config;
+    private final CollisionMap map;
+    private final TransportTable transports;
+    private final int[] targets;
+    private final boolean targetInWilderness;
+    /** The config version the tree was built with; it is out of date once the config has another */
+    @Getter
+    private final int configVersion;
+
+    // The cost from each tile to the closest target and the next tile on the way there
+    private final TileCosts costs;
+    private final TileCosts nextTiles;
+    // Tiles whose cost went down and that have not been expanded since, keyed by packed position
+    private final NodeHeap heap = new NodeHeap(1 << 12);
+    private final Set<Long> blockedMoves = new HashSet<>();
+    // Scratch pool for the moves of one tile, and visited tiles that are never set so every move is returned
+    private final NodePool moves = new NodePool();
+    private final VisitedTiles noneVisited;
+
+    private volatile boolean cancelled;
+
+    public Replanner(PathfinderConfig config, Set<Integer> targets) {
+        this.config = config;
+        this.map = config.getMap();
+        this.transports = config.getTransportTable();
+        this.targets = targets.stream().mapToInt(Integer::intValue).toArray();
+        this.targetInWilderness = PathfinderConfig.isInWilderness(targets);
+        this.configVersion = config.getVersion();
+        this.costs = new TileCosts(map);
+        this.nextTiles = new TileCosts(map);
+        this.noneVisited = new VisitedTiles(map);
+        for (int target : this.targets) {
+            costs.set(target, 0);
+            heap.add(target, 0);
+        }
+    }
+
+    /** Makes a running or later {@link #findPath(int)} return an empty path; the replanner cannot be used again */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns the path from the start to the closest target, continuing the search until the start is settled.
+     * Empty if no target can be reached, if that was not found out before the cutoff, or if cancelled; a later
+     * call continues from where this one stopped.
+     */
+    public List<Integer> findPath(int start) {
+        if (!config.canReach(start, targets, transports)) {
+            return new ArrayList<>();
+        }
+        final Transport[] teleports = config.getTeleportsAt(start);
+        if (!settle(start, teleports, System.currentTimeMillis() + config.getCalculationCutoffMillis())) {
+            return new ArrayList<>();
+        }
+
+        final List<Integer> path = new ArrayList<>();
+        path.add(start);
+        int tile = start;
+        final Transport teleport = bestTeleport(start, teleports);
+        if (teleport != null) {
+            tile = teleport.getDestination();
+            path.add(tile);
+        } else if (costs.get(start) == TileCosts.UNREACHED) {
+            return new ArrayList<>();
+        }
+        while (costs.get(tile) > 0) {
+            tile = nextTiles.get(tile);
+            if (tile == TileCosts.UNREACHED) {
+                return new ArrayList<>();
+            }
+            path.add(tile);
+        }
+        return path;
+    }
+
+    /**
+     * Forbids a move, such as through a door that could not be opened or by a transport that can no longer be
+     * used, and resets the tiles whose way to the targets led through it. The next {@link #findPath(int)}
+     * relaxes them again from the tiles around them.
+     */
+    public void block(int from, int to) {
+        if (!blockedMoves.add(moveKey(from, to)) || nextTiles.get(from) != to) {
+            return;
+        }
+
+        // Every tile whose next tiles lead through the move, found through the tiles each one can be reached from
+        int[] subtree = new int[64];
+        int size = 0;
+        subtree[size++] = from;
+        costs.set(from, TileCosts.UNREACHED);
+        nextTiles.set(from, TileCosts.UNREACHED);
+        for (int i = 0; i < size; ++i) {
+            final int tile = subtree[i];
+            moves.clear();
+            map.getPredecessors(moves.add(tile, NodePool.NONE), moves, noneVisited, transports, transports.reversed());
+            for (int move = 1; move < moves.size(); ++move) {
+                final int previous = moves.getPosition(move);
+                if (nextTiles.get(previous) != tile) {
+                    continue;
+                }
+                if (size == subtree.length) {
+                    subtree = Arrays.copyOf(subtree, size * 2);
+                }
+                subtree[size++] = previous;
+                costs.set(previous, TileCosts.UNREACHED);
+                nextTiles.set(previous, TileCosts.UNREACHED);
+            }
+        }
+
+        // Reconnects each of them to the best tile it can move to outside the reset ones
+        for (int i = 0; i < size; ++i) {
+            final int tile = subtree[i];
+            moves.clear();
+            map.getNeighbors(moves.add(tile, NodePool.NONE), moves, noneVisited, transports, NO_TELEPORTS);
+            int bestCost = TileCosts.UNREACHED;
+            int bestNext = TileCosts.UNREACHED;
+            for (int move = 1; move < moves.size(); ++move) {
+                final int next = moves.getPosition(move);
+                final int nextCost = costs.get(next);
+                if (nextCost == TileCosts.UNREACHED || !isAllowed(tile, next)) {
+                    continue;
+                }
+                if (nextCost + moves.getCost(move) < bestCost) {
+                    bestCost = nextCost + moves.getCost(move);
+                    bestNext = next;
+                }
+            }
+            if (bestNext != TileCosts.UNREACHED) {
+                costs.set(tile, bestCost);
+                nextTiles.set(tile, bestNext);
+                heap.add(tile, bestCost);
+            }
+        }
+    }
+
+    /**
+     * Expands the cheapest tiles until the start's cost, directly or through one of its teleports, is no more
+     * than that of any tile left to expand. Returns false if cancelled or past the cutoff first.
+     */
+    private boolean settle(int start, Transport[] teleports, long cutoffTimeMillis) {
+        int bound = bound(start, teleports);
+        int expanded = 0;
+        while (!heap.isEmpty() && heap.peekCost() < bound) {
+            final int cost = heap.peekCost();
+            final int tile = heap.poll();
+            if (cost != costs.get(tile)) {
+                continue; // Queued again at another cost since
+            }
+            expand(tile, cost);
+
+            if (++expanded % CHECK_INTERVAL == 0) {
+                // The bound only goes down as tiles are expanded, so an older one never stops the search too early
+                bound = bound(start, teleports);
+                if (cancelled || System.currentTimeMillis() > cutoffTimeMillis) {
+                    return false;
+                }
+            }
+        }
+        return !cancelled;
+    }
+
+    private void expand(int tile, int cost) {
+        moves.clear();
+        map.getPredecessors(moves.add(tile, NodePool.NONE), moves, noneVisited, transports, transports.reversed());
+        for (int move = 1; move < moves.size(); ++move) {
+            final int previous = moves.getPosition(move);
+            final int previousCost = cost + moves.getCost(move);
+            if (previousCost < costs.get(previous) && isAllowed(previous, tile)) {
+                costs.set(previous, previousCost);
+                nextTiles.set(previous, tile);
+                heap.add(previous, previousCost);
+            }
+        }
+    }
+
+    private boolean isAllowed(int from, int to) {
+        return !config.avoidWilderness(from, to, targetInWilderness)
+            && (blockedMoves.isEmpty() || !blockedMoves.contains(moveKey(from, to)));
+    }
+
+    // The lowest known cost from the start, either walking or through one of the teleports
+    private int bound(int start, Transport[] teleports) {
+        int bound = costs.get(start);
+        final Transport teleport = bestTeleport(start, teleports);
+        if (teleport != null) {
+            bound = Math.min(bound, teleport.getDuration() + costs.get(teleport.getDestination()));
+        }
+        return bound;
+    }
+
+    // The teleport with the lowest known cost from the start, or null if walking is at most as expensive
+    private Transport bestTeleport(int start, Transport[] teleports) {
+        long bestCost = costs.get(start);
+        Transport best = null;
+        for (Transport teleport : teleports) {
+            final int destinationCost = costs.get(teleport.getDestination());
+            if (destinationCost != TileCosts.UNREACHED && (long) teleport.getDuration() + destinationCost < bestCost) {
+                bestCost = (long) teleport.getDuration() + destinationCost;
+                best = teleport;
+            }
+        }
+        return best;
+    }
+
+    private static long moveKey(int from, int to) {
+        return (long) from << 32 | (to & 0xFFFFFFFFL);
+    }
+}
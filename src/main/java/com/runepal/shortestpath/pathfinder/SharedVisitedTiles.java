@@ -0,0 +1,53 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import com.runepal.shortestpath.WorldPointUtil;
+import static net.runelite.api.Constants.REGION_SIZE;
+
+/**
+ * The tiles each half of a bidirectional search has reached, with the cost it reached them at, shared by the
+ * threads of both halves. A region is allocated by whichever half reaches it first. Costs are read and written
+ * as volatiles, so of two halves reaching the same tile at the same time at least one sees the other.
+ */
+class SharedVisitedTiles {
+    static final int FORWARD = 0;
+    static final int BACKWARD = 1;
+    static final int UNREACHED = -1;
+
+    private final SplitFlagMap.RegionExtent regionExtents;
+    private final int widthInclusive;
+    private final byte[] regionPlanes;
+    // The cost plus one of each half by ((plane * REGION_SIZE + y) * REGION_SIZE + x) * 2 + half, zero if unreached
+    private final AtomicReferenceArray<AtomicIntegerArray> regions;
+
+    SharedVisitedTiles(CollisionMap map) {
+        regionExtents = SplitFlagMap.getRegionExtents();
+        widthInclusive = regionExtents.getWidth() + 1;
+        regionPlanes = map.getPlanes();
+        regions = new AtomicReferenceArray<>(regionPlanes.length);
+    }
+
+    /**
+     * Records the cost a half reached a tile at, and returns the cost the other half reached it at, or UNREACHED.
+     * Tiles outside the collision map are never recorded.
+     */
+    int visit(int half, int packedPoint, int cost) {
+        final int x = WorldPointUtil.unpackWorldX(packedPoint);
+        final int y = WorldPointUtil.unpackWorldY(packedPoint);
+        final int plane = WorldPointUtil.unpackWorldPlane(packedPoint);
+        final int regionIndex = (x / REGION_SIZE - regionExtents.getMinX()) + (y / REGION_SIZE - regionExtents.getMinY()) * widthInclusive;
+        if (regionIndex < 0 || regionIndex >= regionPlanes.length || plane >= regionPlanes[regionIndex]) {
+            return UNREACHED;
+        }
+
+        AtomicIntegerArray region = regions.get(regionIndex);
+        if (region == null) {
+            regions.compareAndSet(regionIndex, null, new AtomicIntegerArray(regionPlanes[regionIndex] * REGION_SIZE * REGION_SIZE * 2));
+            region = regions.get(regionIndex);
+        }
+        final int index = ((plane * REGION_SIZE + y % REGION_SIZE) * REGION_SIZE + x % REGION_SIZE) * 2;
+        region.set(index + half, cost + 1);
+        return region.get(index + (half ^ 1)) - 1;
+    }
+}
@@ -1,56 +1,176 @@
 package com.runepal.shortestpath.pathfinder;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import com.runepal.shortestpath.Util;
 
 import static net.runelite.api.Constants.REGION_SIZE;
 
+/**
+ * The collision flags of every region in the {@link CollisionFile} layout, usually mapped outside the heap,
+ * together with the walkable directions and blocked tiles derived from them.
+ */
 public class SplitFlagMap {
+    public static final long DEFAULT_DECODED_CACHE_SIZE = 8L << 20;
+
     @Getter
     private static RegionExtent regionExtents;
 
     @Getter
     private final byte[] regionMapPlaneCounts;
-    // Size is automatically chosen based on the max extents of the collision data
-    private final FlagMap[] regionMaps;
     private final int widthInclusive;
+    // The data of each region, starting with its raw flags; null for regions without collision data, or
+    // for regions the cache has not decoded yet
+    private final AtomicReferenceArray<ByteBuffer> regions;
+    // Decodes regions on demand when the collision file could not be extracted, otherwise null
+    private final CollisionFile.RegionCache regionCache;
+    // Of the raw flags, as stored in the collision file or computed by the cache when it is built
+    private final long checksum;
+
+    SplitFlagMap(RegionExtent regionExtents, AtomicReferenceArray<ByteBuffer> regions, byte[] planeCounts, long checksum) {
+        this(regionExtents, regions, planeCounts, null, checksum);
+    }
 
-    public SplitFlagMap(Map<Integer, byte[]> compressedRegions) {
-        widthInclusive = regionExtents.getWidth() + 1;
-        final int heightInclusive = regionExtents.getHeight() + 1;
-        regionMaps = new FlagMap[widthInclusive * heightInclusive];
-        regionMapPlaneCounts = new byte[regionMaps.length];
-
-        for (Map.Entry<Integer, byte[]> entry : compressedRegions.entrySet()) {
-            final int pos = entry.getKey();
-            final int x = unpackX(pos);
-            final int y = unpackY(pos);
-            final int index = getIndex(x, y);
-            FlagMap flagMap = new FlagMap(x * REGION_SIZE, y * REGION_SIZE, entry.getValue());
-            regionMaps[index] = flagMap;
-            regionMapPlaneCounts[index] = flagMap.getPlaneCount();
-        }
+    SplitFlagMap(RegionExtent regionExtents, AtomicReferenceArray<ByteBuffer> regions, byte[] planeCounts,
+                 CollisionFile.RegionCache regionCache) {
+        this(regionExtents, regions, planeCounts, regionCache, regionCache.getChecksum());
+    }
+
+    private SplitFlagMap(RegionExtent regionExtents, AtomicReferenceArray<ByteBuffer> regions, byte[] planeCounts,
+                         CollisionFile.RegionCache regionCache, long checksum) {
+        SplitFlagMap.regionExtents = regionExtents;
+        this.widthInclusive = regionExtents.getWidth() + 1;
+        this.regions = regions;
+        this.regionMapPlaneCounts = planeCounts;
+        this.regionCache = regionCache;
+        this.checksum = checksum;
     }
 
     public boolean get(int x, int y, int z, int flag) {
-        final int index = getIndex(x / REGION_SIZE, y / REGION_SIZE);
-        if (index < 0 || index >= regionMaps.length || regionMaps[index] == null) {
+        final int index = getIndex(x, y, z);
+        if (index < 0) {
             return false;
         }
+        final int rx = x % REGION_SIZE;
+        final int ry = y % REGION_SIZE;
+
+        final int row = (z * FlagMap.FLAG_COUNT + flag) * REGION_SIZE + ry;
+        return (getRegion(index).getLong(row * Long.BYTES) >>> rx & 1) != 0;
+    }
+
+    /**
+     * Returns the walkable directions from a tile as a bitmask indexed by OrdinalDirection ordinal.
+     * Matches the directions CollisionMap used to derive from up to twenty flag lookups.
+     */
+    public int getDirections(int x, int y, int z) {
+        final int index = getIndex(x, y, z);
+        if (index < 0) {
+            // Rare (e.g. a transport into an unmapped area), so fall back to reading the neighbouring regions
+            return slowDirections(x, y, z);
+        }
 
-        return regionMaps[index].get(x, y, z, flag);
+        final int offset = regionMapPlaneCounts[index] * CollisionFile.FLAG_BYTES_PER_PLANE;
+        return getRegion(index).get(offset + (z * REGION_SIZE + y % REGION_SIZE) * REGION_SIZE + x % REGION_SIZE) & 0xFF;
     }
 
-    private int getIndex(int regionX, int regionY) {
-        return (regionX - regionExtents.getMinX()) + (regionY - regionExtents.getMinY()) * widthInclusive;
+    /**
+     * Copies the directions of every tile of a region plane, by y * REGION_SIZE + x within the region.
+     * The region index and plane must be of a region plane with collision data.
+     */
+    void copyDirections(int index, int z, byte[] directions) {
+        final ByteBuffer region = getRegion(index).duplicate();
+        region.position(regionMapPlaneCounts[index] * CollisionFile.FLAG_BYTES_PER_PLANE + z * CollisionFile.DIRECTION_BYTES_PER_PLANE);
+        region.get(directions, 0, CollisionFile.DIRECTION_BYTES_PER_PLANE);
+    }
+
+    /** Whether a tile has no walkable cardinal direction, e.g. the tile of a fairy ring */
+    public boolean isBlocked(int x, int y, int z) {
+        final int index = getIndex(x, y, z);
+        if (index < 0) {
+            return slowBlocked(x, y, z);
+        }
+
+        final int offset = regionMapPlaneCounts[index] * (CollisionFile.FLAG_BYTES_PER_PLANE + CollisionFile.DIRECTION_BYTES_PER_PLANE);
+        return (getRegion(index).getLong(offset + (z * REGION_SIZE + y % REGION_SIZE) * Long.BYTES) & (1L << (x % REGION_SIZE))) != 0;
+    }
+
+    // Only called for regions with at least one plane
+    private ByteBuffer getRegion(int index) {
+        final ByteBuffer region = regions.get(index);
+        if (regionCache == null) {
+            return region;
+        }
+        if (region == null) {
+            return regionCache.decode(index);
+        }
+        regionCache.touch(index);
+        return region;
+    }
+
+    /** Whether regions are decoded when first used, so reading every region would thrash the cache */
+    public boolean isDecodedOnDemand() {
+        return regionCache != null;
+    }
+
+    /** CRC32 of the raw collision flags, to tell whether data derived from them is out of date */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    static int bit(OrdinalDirection direction, boolean traversable) {
+        return traversable ? 1 << direction.ordinal() : 0;
+    }
+
+    // Derives the directions straight from the raw flags, for tiles outside the precomputed regions
+    private int slowDirections(int x, int y, int z) {
+        int mask = 0;
+        if (slowBlocked(x, y, z)) {
+            boolean westBlocked = slowBlocked(x - 1, y, z);
+            boolean eastBlocked = slowBlocked(x + 1, y, z);
+            boolean southBlocked = slowBlocked(x, y - 1, z);
+            boolean northBlocked = slowBlocked(x, y + 1, z);
+            mask |= bit(OrdinalDirection.WEST, !westBlocked);
+            mask |= bit(OrdinalDirection.EAST, !eastBlocked);
+            mask |= bit(OrdinalDirection.SOUTH, !southBlocked);
+            mask |= bit(OrdinalDirection.NORTH, !northBlocked);
+            mask |= bit(OrdinalDirection.SOUTH_WEST, !slowBlocked(x - 1, y - 1, z) && !westBlocked && !southBlocked);
+            mask |= bit(OrdinalDirection.SOUTH_EAST, !slowBlocked(x + 1, y - 1, z) && !eastBlocked && !southBlocked);
+            mask |= bit(OrdinalDirection.NORTH_WEST, !slowBlocked(x - 1, y + 1, z) && !westBlocked && !northBlocked);
+            mask |= bit(OrdinalDirection.NORTH_EAST, !slowBlocked(x + 1, y + 1, z) && !eastBlocked && !northBlocked);
+        } else {
+            boolean canW = get(x - 1, y, z, 1);
+            boolean canE = get(x, y, z, 1);
+            boolean canS = get(x, y - 1, z, 0);
+            boolean canN = get(x, y, z, 0);
+            mask |= bit(OrdinalDirection.WEST, canW);
+            mask |= bit(OrdinalDirection.EAST, canE);
+            mask |= bit(OrdinalDirection.SOUTH, canS);
+            mask |= bit(OrdinalDirection.NORTH, canN);
+            mask |= bit(OrdinalDirection.SOUTH_WEST, canS && get(x - 1, y - 1, z, 1) && canW && get(x - 1, y - 1, z, 0));
+            mask |= bit(OrdinalDirection.SOUTH_EAST, canS && get(x, y - 1, z, 1) && canE && get(x + 1, y - 1, z, 0));
+            mask |= bit(OrdinalDirection.NORTH_WEST, canN && get(x - 1, y + 1, z, 1) && canW && get(x - 1, y, z, 0));
+            mask |= bit(OrdinalDirection.NORTH_EAST, canN && get(x, y + 1, z, 1) && canE && get(x + 1, y, z, 0));
+        }
+        return mask;
+    }
+
+    private boolean slowBlocked(int x, int y, int z) {
+        return !get(x, y, z, 0) && !get(x, y - 1, z, 0) && !get(x, y, z, 1) && !get(x - 1, y, z, 1);
+    }
+
+    // The index of the region of a tile, or -1 if the region is outside the extents or has no such plane.
+    // Both region coordinates are checked, since a region past either side of a row would index the next row.
+    private int getIndex(int x, int y, int z) {
+        final int regionX = x / REGION_SIZE;
+        final int regionY = y / REGION_SIZE;
+        if (x < 0 || y < 0 || regionX < regionExtents.getMinX() || regionX > regionExtents.getMaxX()
+            || regionY < regionExtents.getMinY() || regionY > regionExtents.getMaxY()) {
+            return -1;
+        }
+        final int index = (regionX - regionExtents.getMinX()) + (regionY - regionExtents.getMinY()) * widthInclusive;
+        return z >= 0 && z < regionMapPlaneCounts[index] ? index : -1;
     }
 
     public static int unpackX(int position) {
@@ -65,33 +185,17 @@ public class SplitFlagMap {
         return (x & 0xFFFF) | ((y & 0xFFFF) << 16);
     }
 
+    /** Maps the collision file, extracting it from collision-map.zip first if needed */
     public static SplitFlagMap fromResources() {
-        Map<Integer, byte[]> compressedRegions = new HashMap<>();
-        try (ZipInputStream in = new ZipInputStream(PathfinderConfig.class.getResourceAsStream("/collision-map.zip"))) {
-            int minX = Integer.MAX_VALUE;
-            int minY = Integer.MAX_VALUE;
-            int maxX = 0;
-            int maxY = 0;
-
-            ZipEntry entry;
-            while ((entry = in.getNextEntry()) != null) {
-                String[] n = entry.getName().split("_");
-                final int x = Integer.parseInt(n[0]);
-                final int y = Integer.parseInt(n[1]);
-                minX = Math.min(minX, x);
-                minY = Math.min(minY, y);
-                maxX = Math.max(maxX, x);
-                maxY = Math.max(maxY, y);
-
-                compressedRegions.put(SplitFlagMap.packPosition(x, y), Util.readAllBytes(in));
-            }
-
-            regionExtents = new RegionExtent(minX, minY, maxX, maxY);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        return fromResources(DEFAULT_DECODED_CACHE_SIZE);
+    }
 
-        return new SplitFlagMap(compressedRegions);
+    /**
+     * Maps the collision file, extracting it from collision-map.zip first if needed. If it cannot be extracted,
+     * regions are decoded when first used, keeping at most decodedCacheSize bytes of them.
+     */
+    public static SplitFlagMap fromResources(long decodedCacheSize) {
+        return CollisionFile.load(decodedCacheSize);
     }
 
     @RequiredArgsConstructor
@@ -0,0 +1,144 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.Arrays;
+import com.runepal.shortestpath.WorldPointUtil;
+import static net.runelite.api.Constants.REGION_SIZE;
+
+/**
+ * The targets of a search bucketed into a grid of region-sized cells per plane, so the target closest to a tile
+ * is found by looking at the cells around it, nearest first, rather than at every target. Only targets on the
+ * same plane as the tile are considered, like {@link WorldPointUtil#distanceBetween(int, int)}.
+ */
+class TargetIndex {
+    private final Grid[] planes;
+
+    TargetIndex(int[] targets) {
+        int planeCount = 0;
+        for (int target : targets) {
+            planeCount = Math.max(planeCount, WorldPointUtil.unpackWorldPlane(target) + 1);
+        }
+        planes = new Grid[planeCount];
+        for (int plane = 0; plane < planeCount; ++plane) {
+            final int z = plane;
+            final int[] onPlane = Arrays.stream(targets).filter(t -> WorldPointUtil.unpackWorldPlane(t) == z).toArray();
+            if (onPlane.length > 0) {
+                planes[plane] = new Grid(onPlane);
+            }
+        }
+    }
+
+    /** The Chebyshev distance to the closest target, or Integer.MAX_VALUE if there is none on the tile's plane */
+    int distance(int packedPoint) {
+        final int target = find(packedPoint, false);
+        return target == WorldPointUtil.UNDEFINED ? Integer.MAX_VALUE : WorldPointUtil.distanceBetween(packedPoint, target);
+    }
+
+    /**
+     * The target with the lowest Chebyshev plus Manhattan distance, and of those the lowest Chebyshev distance,
+     * which is how a search that ends early picks the tile it gets closest at. UNDEFINED if there is none on the
+     * tile's plane.
+     */
+    int closest(int packedPoint) {
+        return find(packedPoint, true);
+    }
+
+    private int find(int packedPoint, boolean withManhattan) {
+        final int plane = WorldPointUtil.unpackWorldPlane(packedPoint);
+        final Grid grid = plane < planes.length ? planes[plane] : null;
+        if (grid == null) {
+            return WorldPointUtil.UNDEFINED;
+        }
+
+        final int x = WorldPointUtil.unpackWorldX(packedPoint);
+        final int y = WorldPointUtil.unpackWorldY(packedPoint);
+        // The cell the tile is in, or the closest one if it is outside the grid
+        final int cellX = Math.max(0, Math.min(grid.width - 1, Math.floorDiv(x - grid.minX, REGION_SIZE)));
+        final int cellY = Math.max(0, Math.min(grid.height - 1, Math.floorDiv(y - grid.minY, REGION_SIZE)));
+
+        long best = Long.MAX_VALUE;
+        int bestTarget = WorldPointUtil.UNDEFINED;
+        final int rings = Math.max(grid.width, grid.height);
+        for (int ring = 0; ring < rings; ++ring) {
+            // Every tile in the ring is at least this far on one axis, which also bounds the Manhattan distance
+            final long ringDistance = ring == 0 ? 0 : (ring - 1) * REGION_SIZE + 1;
+            if (key(ringDistance, ringDistance, withManhattan) > best) {
+                break;
+            }
+            for (int dy = -ring; dy <= ring; ++dy) {
+                final int row = cellY + dy;
+                if (row < 0 || row >= grid.height) {
+                    continue;
+                }
+                // The top and bottom rows of the ring are whole, the rows between only have their two ends
+                final int step = dy == -ring || dy == ring ? 1 : Math.max(1, 2 * ring);
+                for (int dx = -ring; dx <= ring; dx += step) {
+                    final int column = cellX + dx;
+                    if (column < 0 || column >= grid.width) {
+                        continue;
+                    }
+                    final int cell = row * grid.width + column;
+                    for (int i = grid.cellStarts[cell]; i < grid.cellStarts[cell + 1]; ++i) {
+                        final int target = grid.targets[i];
+                        final int tx = WorldPointUtil.unpackWorldX(target);
+                        final int ty = WorldPointUtil.unpackWorldY(target);
+                        final long key = key(Math.max(Math.abs(tx - x), Math.abs(ty - y)),
+                            Math.abs(tx - x) + Math.abs(ty - y), withManhattan);
+                        if (key < best) {
+                            best = key;
+                            bestTarget = target;
+                        }
+                    }
+                }
+            }
+        }
+        return bestTarget;
+    }
+
+    // Orders by Chebyshev distance, or by Chebyshev plus Manhattan distance and then Chebyshev distance
+    private static long key(long chebyshev, long manhattan, boolean withManhattan) {
+        return withManhattan ? (chebyshev + manhattan) << 32 | chebyshev : chebyshev;
+    }
+
+    /** The targets on one plane, sorted by cell, with the index of the first target of each cell */
+    private static class Grid {
+        private final int minX;
+        private final int minY;
+        private final int width;
+        private final int height;
+        private final int[] cellStarts;
+        private final int[] targets;
+
+        Grid(int[] targets) {
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+            for (int target : targets) {
+                minX = Math.min(minX, WorldPointUtil.unpackWorldX(target));
+                minY = Math.min(minY, WorldPointUtil.unpackWorldY(target));
+                maxX = Math.max(maxX, WorldPointUtil.unpackWorldX(target));
+                maxY = Math.max(maxY, WorldPointUtil.unpackWorldY(target));
+            }
+            this.minX = minX;
+            this.minY = minY;
+            this.width = (maxX - minX) / REGION_SIZE + 1;
+            this.height = (maxY - minY) / REGION_SIZE + 1;
+
+            // Counting sort of the targets by cell
+            cellStarts = new int[width * height + 1];
+            for (int target : targets) {
+                ++cellStarts[cell(target) + 1];
+            }
+            for (int cell = 0; cell < width * height; ++cell) {
+                cellStarts[cell + 1] += cellStarts[cell];
+            }
+            this.targets = new int[targets.length];
+            final int[] next = Arrays.copyOf(cellStarts, width * height);
+            for (int target : targets) {
+                this.targets[next[cell(target)]++] = target;
+            }
+        }
+
+        private int cell(int target) {
+            return (WorldPointUtil.unpackWorldY(target) - minY) / REGION_SIZE * width
+                + (WorldPointUtil.unpackWorldX(target) - minX) / REGION_SIZE;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import com.runepal.shortestpath.WorldPointUtil;
+import static net.runelite.api.Constants.REGION_SIZE;
+
+/**
+ * The lowest cost a search has reached each tile with, allocated per region like {@link VisitedTiles}.
+ * Used instead of visited tiles when a tile may have to be expanded again at a lower cost.
+ * Reused across searches by generation like {@link VisitedTiles}, so clearing allocates nothing.
+ */
+public class TileCosts {
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final SplitFlagMap.RegionExtent regionExtents;
+    private final int widthInclusive;
+
+    private final int[][] regionCosts;
+    private final byte[] regionPlanes;
+    private final int[] regionGenerations;
+    private int generation = 1;
+    // Tiles on planes the collision map has no data for, e.g. some transport destinations
+    private final Map<Integer, Integer> otherCosts = new HashMap<>();
+
+    public TileCosts(CollisionMap map) {
+        regionExtents = SplitFlagMap.getRegionExtents();
+        widthInclusive = regionExtents.getWidth() + 1;
+        final int heightInclusive = regionExtents.getHeight() + 1;
+
+        regionCosts = new int[widthInclusive * heightInclusive][];
+        regionPlanes = map.getPlanes();
+        regionGenerations = new int[regionCosts.length];
+    }
+
+    public int get(int packedPoint) {
+        final int x = WorldPointUtil.unpackWorldX(packedPoint);
+        final int y = WorldPointUtil.unpackWorldY(packedPoint);
+        final int plane = WorldPointUtil.unpackWorldPlane(packedPoint);
+        final int regionIndex = getRegionIndex(x / REGION_SIZE, y / REGION_SIZE);
+        if (regionIndex < 0 || regionIndex >= regionCosts.length) {
+            return 0; // Region is out of bounds; report that it's been reached to avoid exploring it further
+        }
+        if (plane >= regionPlanes[regionIndex]) {
+            return otherCosts.getOrDefault(packedPoint, UNREACHED);
+        }
+
+        final int[] costs = regionCosts[regionIndex];
+        if (costs == null || regionGenerations[regionIndex] != generation) {
+            return UNREACHED;
+        }
+        return costs[(plane * REGION_SIZE + y % REGION_SIZE) * REGION_SIZE + x % REGION_SIZE];
+    }
+
+    public void set(int packedPoint, int cost) {
+        final int x = WorldPointUtil.unpackWorldX(packedPoint);
+        final int y = WorldPointUtil.unpackWorldY(packedPoint);
+        final int plane = WorldPointUtil.unpackWorldPlane(packedPoint);
+        final int regionIndex = getRegionIndex(x / REGION_SIZE, y / REGION_SIZE);
+        if (regionIndex < 0 || regionIndex >= regionCosts.length) {
+            return;
+        }
+        if (plane >= regionPlanes[regionIndex]) {
+            otherCosts.put(packedPoint, cost);
+            return;
+        }
+
+        int[] costs = regionCosts[regionIndex];
+        if (costs == null) {
+            costs = new int[regionPlanes[regionIndex] * REGION_SIZE * REGION_SIZE];
+            regionCosts[regionIndex] = costs;
+        }
+        if (regionGenerations[regionIndex] != generation) {
+            Arrays.fill(costs, UNREACHED);
+            regionGenerations[regionIndex] = generation;
+        }
+        costs[(plane * REGION_SIZE + y % REGION_SIZE) * REGION_SIZE + x % REGION_SIZE] = cost;
+    }
+
+    public void clear() {
+        if (++generation == 0) {
+            Arrays.fill(regionGenerations, 0);
+            generation = 1;
+        }
+        otherCosts.clear();
+    }
+
+    private int getRegionIndex(int regionX, int regionY) {
+        return (regionX - regionExtents.minX) + (regionY - regionExtents.minY) * widthInclusive;
+    }
+}
@@ -0,0 +1,139 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import com.runepal.shortestpath.Transport;
+import com.runepal.shortestpath.WorldPointUtil;
+
+/**
+ * The usable transports by origin for the pathfinder's hot path. The transports of each origin are a range of
+ * one flat array, found through an open-addressing table of packed origins with linear probing. A bitset
+ * indexed by the hash of a tile is checked first, so nearly every tile, which has no transports, is rejected
+ * with one read. Built by each refresh and never modified afterwards, so searches on any thread can share it.
+ */
+public class TransportTable {
+    public static final int NONE = -1;
+    // Never a tile, teleports use it as their origin and are not in the table
+    private static final int EMPTY = WorldPointUtil.UNDEFINED;
+    // Bits of the origin filter per origin; with 16 about one tile in sixteen sharing a bit with an origin passes it
+    private static final int FILTER_BITS_PER_ORIGIN = 16;
+
+    private final int[] keys;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final Transport[] transports;
+    private final int shift;
+    private final long[] filter;
+    private final int filterShift;
+    // The same transports by destination, built when first needed
+    private volatile TransportTable reversed;
+
+    public TransportTable(Map<Integer, Set<Transport>> transportsByOrigin) {
+        int originCount = 0;
+        int transportCount = 0;
+        for (Map.Entry<Integer, Set<Transport>> entry : transportsByOrigin.entrySet()) {
+            if (entry.getKey() != EMPTY && !entry.getValue().isEmpty()) {
+                ++originCount;
+                transportCount += entry.getValue().size();
+            }
+        }
+
+        // At most half full, so probes stay short
+        final int bits = Math.max(3, 33 - Integer.numberOfLeadingZeros(originCount));
+        shift = Integer.SIZE - bits;
+        keys = new int[1 << bits];
+        offsets = new int[keys.length];
+        lengths = new int[keys.length];
+        Arrays.fill(keys, EMPTY);
+        transports = new Transport[transportCount];
+
+        final int filterBits = Math.max(Long.SIZE, Integer.highestOneBit(Math.max(1, originCount * FILTER_BITS_PER_ORIGIN) - 1) << 1);
+        filterShift = Integer.SIZE - Integer.numberOfTrailingZeros(filterBits);
+        filter = new long[filterBits / Long.SIZE];
+
+        int offset = 0;
+        for (Map.Entry<Integer, Set<Transport>> entry : transportsByOrigin.entrySet()) {
+            final int origin = entry.getKey();
+            if (origin == EMPTY || entry.getValue().isEmpty()) {
+                continue;
+            }
+            int slot = hash(origin) >>> shift;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = origin;
+            offsets[slot] = offset;
+            lengths[slot] = entry.getValue().size();
+            for (Transport transport : entry.getValue()) {
+                transports[offset++] = transport;
+            }
+            final int bit = hash(origin) >>> filterShift;
+            filter[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static int hash(int packedPoint) {
+        return packedPoint * 0x9E3779B9;
+    }
+
+    /** Returns the slot of the transports from a tile, or NONE if there are none */
+    public int find(int packedPoint) {
+        final int hash = hash(packedPoint);
+        final int bit = hash >>> filterShift;
+        if ((filter[bit >>> 6] & 1L << bit) == 0) {
+            return NONE;
+        }
+        for (int slot = hash >>> shift; ; slot = (slot + 1) & (keys.length - 1)) {
+            final int key = keys[slot];
+            if (key == packedPoint) {
+                return slot;
+            } else if (key == EMPTY) {
+                return NONE;
+            }
+        }
+    }
+
+    /** The index of the first transport of a slot */
+    public int getStart(int slot) {
+        return offsets[slot];
+    }
+
+    /** The index after the last transport of a slot */
+    public int getEnd(int slot) {
+        return offsets[slot] + lengths[slot];
+    }
+
+    public Transport get(int index) {
+        return transports[index];
+    }
+
+    /**
+     * The same transports keyed by their destination instead of their origin, for searching backwards from
+     * the targets. Its slots are found with the destination, and the origin of each transport is where it leads back to.
+     */
+    public TransportTable reversed() {
+        TransportTable table = reversed;
+        if (table == null) {
+            synchronized (this) {
+                table = reversed;
+                if (table == null) {
+                    final Map<Integer, Set<Transport>> transportsByDestination = new HashMap<>();
+                    for (Transport transport : transports) {
+                        transportsByDestination.computeIfAbsent(transport.getDestination(), k -> new HashSet<>()).add(transport);
+                    }
+                    table = new TransportTable(transportsByDestination);
+                    reversed = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /** The number of transports, which are at the indices from 0 up to it */
+    public int getTransportCount() {
+        return transports.length;
+    }
+}
@@ -1,14 +1,22 @@
 package com.runepal.shortestpath.pathfinder;
 
+import java.util.Arrays;
 import com.runepal.shortestpath.WorldPointUtil;
 import static net.runelite.api.Constants.REGION_SIZE;
 
+/**
+ * Tiles a search has visited, one bitset per region allocated the first time the region is visited.
+ * Kept per thread and reused by every search: clearing starts a new generation, and a region whose
+ * generation is out of date counts as unvisited and is zeroed when a search first visits it again.
+ */
 public class VisitedTiles {
     private final SplitFlagMap.RegionExtent regionExtents;
     private final int widthInclusive;
 
     private final VisitedRegion[] visitedRegions;
     private final byte[] visitedRegionPlanes;
+    private final int[] regionGenerations;
+    private int generation = 1;
 
     public VisitedTiles(CollisionMap map) {
         regionExtents = SplitFlagMap.getRegionExtents();
@@ -17,6 +25,7 @@ public class VisitedTiles {
 
         visitedRegions = new VisitedRegion[widthInclusive * heightInclusive];
         visitedRegionPlanes = map.getPlanes();
+        regionGenerations = new int[visitedRegions.length];
     }
 
     public boolean get(int packedPoint) {
@@ -33,7 +42,7 @@ public class VisitedTiles {
         }
 
         final VisitedRegion region = visitedRegions[regionIndex];
-        if (region == null) {
+        if (region == null || regionGenerations[regionIndex] != generation) {
             return false;
         }
 
@@ -57,16 +66,21 @@ public class VisitedTiles {
         if (region == null) {
             region = new VisitedRegion(visitedRegionPlanes[regionIndex]);
             visitedRegions[regionIndex] = region;
+            regionGenerations[regionIndex] = generation;
+        } else if (regionGenerations[regionIndex] != generation) {
+            region.clear();
+            regionGenerations[regionIndex] = generation;
         }
 
         return region.set(x % REGION_SIZE, y % REGION_SIZE, plane);
     }
 
+    /** Marks every tile as unvisited without touching the regions */
     public void clear() {
-        for (int i = 0; i < visitedRegions.length; ++i) {
-            if (visitedRegions[i] != null) {
-                visitedRegions[i] = null;
-            }
+        if (++generation == 0) {
+            // After the counter wraps around, stale regions could match again
+            Arrays.fill(regionGenerations, 0);
+            generation = 1;
         }
     }
 
@@ -105,6 +119,10 @@ public class VisitedTiles {
             return unique;
         }
 
+        void clear() {
+            Arrays.fill(planes, 0L);
+        }
+
         public boolean get(int x, int y, int plane) {
             if (plane >= planeCount) {
                 // This check is necessary since we check visited tiles before checking the collision map, e.g. the node
@@ -0,0 +1,115 @@
+package com.runepal.shortestpath.pathfinder;
+
+import net.runelite.api.coords.WorldArea;
+import com.runepal.shortestpath.WorldPointUtil;
+
+/**
+ * Which wilderness areas each tile is in, precomputed from the area bounds so the pathfinder classifies a
+ * tile with one array lookup instead of up to eleven area checks. All areas are on plane 0, inside a box
+ * above ground or a box underground, and one byte of flags is kept per tile of those boxes.
+ */
+final class WildernessMap {
+    static final int WILDERNESS = 1;
+    static final int LEVEL_20 = 1 << 1;
+    static final int LEVEL_30 = 1 << 2;
+
+    private static final WorldArea WILDERNESS_ABOVE_GROUND = new WorldArea(2944, 3525, 448, 448, 0);
+    private static final WorldArea WILDERNESS_ABOVE_GROUND_LEVEL_20 = new WorldArea(2944, 3680, 448, 448, 0);
+    private static final WorldArea WILDERNESS_ABOVE_GROUND_LEVEL_30 = new WorldArea(2944, 3760, 448, 448, 0);
+    private static final WorldArea WILDERNESS_UNDERGROUND = new WorldArea(2944, 9918, 320, 442, 0);
+    private static final WorldArea WILDERNESS_UNDERGROUND_LEVEL_20 = new WorldArea(2944, 10075, 320, 442, 0);
+    private static final WorldArea WILDERNESS_UNDERGROUND_LEVEL_30 = new WorldArea(2944, 10155, 320, 442, 0);
+    private static final WorldArea[] NOT_WILDERNESS = {
+        new WorldArea(3123, 3622, 2, 10, 0), // Ferox Enclave
+        new WorldArea(3125, 3617, 16, 23, 0),
+        new WorldArea(3138, 3636, 18, 10, 0),
+        new WorldArea(3141, 3625, 14, 11, 0),
+        new WorldArea(3141, 3619, 7, 6, 0),
+        new WorldArea(2997, 3525, 34, 9, 0),
+        new WorldArea(3005, 3534, 21, 10, 0),
+        new WorldArea(3000, 3534, 5, 5, 0),
+        new WorldArea(3031, 3525, 2, 2, 0),
+    };
+
+    private static final Box ABOVE_GROUND = new Box(WILDERNESS_ABOVE_GROUND, WILDERNESS_ABOVE_GROUND_LEVEL_20, WILDERNESS_ABOVE_GROUND_LEVEL_30);
+    private static final Box UNDERGROUND = new Box(WILDERNESS_UNDERGROUND, WILDERNESS_UNDERGROUND_LEVEL_20, WILDERNESS_UNDERGROUND_LEVEL_30);
+
+    static {
+        ABOVE_GROUND.set(WILDERNESS_ABOVE_GROUND, WILDERNESS);
+        for (WorldArea area : NOT_WILDERNESS) {
+            ABOVE_GROUND.clear(area, WILDERNESS);
+        }
+        ABOVE_GROUND.set(WILDERNESS_ABOVE_GROUND_LEVEL_20, LEVEL_20);
+        ABOVE_GROUND.set(WILDERNESS_ABOVE_GROUND_LEVEL_30, LEVEL_30);
+        UNDERGROUND.set(WILDERNESS_UNDERGROUND, WILDERNESS);
+        UNDERGROUND.set(WILDERNESS_UNDERGROUND_LEVEL_20, LEVEL_20);
+        UNDERGROUND.set(WILDERNESS_UNDERGROUND_LEVEL_30, LEVEL_30);
+    }
+
+    private WildernessMap() {
+    }
+
+    /** Returns the WILDERNESS, LEVEL_20 and LEVEL_30 flags of a tile */
+    static int getFlags(int packedPoint) {
+        if (WorldPointUtil.unpackWorldPlane(packedPoint) != 0) {
+            return 0;
+        }
+        final int x = WorldPointUtil.unpackWorldX(packedPoint);
+        final int y = WorldPointUtil.unpackWorldY(packedPoint);
+        return y < UNDERGROUND.minY ? ABOVE_GROUND.get(x, y) : UNDERGROUND.get(x, y);
+    }
+
+    /** The flags of every tile in the bounds of some areas, which may overlap */
+    private static class Box {
+        private final int minX;
+        private final int minY;
+        private final int width;
+        private final int height;
+        private final byte[] flags;
+
+        Box(WorldArea... areas) {
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (WorldArea area : areas) {
+                minX = Math.min(minX, area.getX());
+                minY = Math.min(minY, area.getY());
+                maxX = Math.max(maxX, area.getX() + area.getWidth() - 1);
+                maxY = Math.max(maxY, area.getY() + area.getHeight() - 1);
+            }
+            this.minX = minX;
+            this.minY = minY;
+            this.width = maxX - minX + 1;
+            this.height = maxY - minY + 1;
+            this.flags = new byte[width * height];
+        }
+
+        void set(WorldArea area, int flag) {
+            for (int y = area.getY(); y < area.getY() + area.getHeight(); ++y) {
+                final int row = (y - minY) * width - minX;
+                for (int x = area.getX(); x < area.getX() + area.getWidth(); ++x) {
+                    flags[row + x] |= flag;
+                }
+            }
+        }
+
+        void clear(WorldArea area, int flag) {
+            for (int y = area.getY(); y < area.getY() + area.getHeight(); ++y) {
+                final int row = (y - minY) * width - minX;
+                for (int x = area.getX(); x < area.getX() + area.getWidth(); ++x) {
+                    flags[row + x] &= ~flag;
+                }
+            }
+        }
+
+        int get(int x, int y) {
+            x -= minX;
+            y -= minY;
+            if (x < 0 || y < 0 || x >= width || y >= height) {
+                return 0;
+            }
+            return flags[y * width + x];
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.runepal.shortestpath;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/** Checks that the compiled transport index reads back the same transports and destinations as the TSVs */
+public class TransportIndexTest {
+    @Test
+    public void indexMatchesTheTsvs() throws IOException {
+        final Map<Integer, Set<Transport>> transports = Transport.loadAllFromResources();
+        final Map<String, Set<Integer>> destinations = Destination.loadAllFromResources();
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            new TransportIndex(transports, destinations).write(out);
+        }
+        final TransportIndex index = TransportIndex.read(bytes.toByteArray());
+        assertNotNull(index);
+
+        assertEquals(transports.keySet(), index.getTransports().keySet());
+        for (Map.Entry<Integer, Set<Transport>> entry : transports.entrySet()) {
+            assertEquals("Transports from " + entry.getKey(),
+                describe(entry.getValue()), describe(index.getTransports().get(entry.getKey())));
+        }
+        assertEquals(destinations, index.getDestinations());
+    }
+
+    // Transports have no equals, so they are compared by every field the index stores
+    private static Set<String> describe(Set<Transport> transports) {
+        final Set<String> descriptions = new TreeSet<>();
+        for (Transport transport : transports) {
+            final TransportItems items = transport.getItemRequirements();
+            descriptions.add(String.join("|",
+                String.valueOf(transport.getOrigin()),
+                String.valueOf(transport.getDestination()),
+                String.valueOf(transport.getObjectID()),
+                transport.getMenuOption(),
+                transport.getMenuTarget(),
+                Arrays.toString(transport.getSkillLevels()),
+                new TreeSet<>(transport.getQuests()).toString(),
+                items == null ? "null" : Arrays.deepToString(new Object[] {
+                    items.getItems(), items.getStaves(), items.getOffhands(), items.getQuantities() }),
+                String.valueOf(transport.getType()),
+                String.valueOf(transport.getDuration()),
+                String.valueOf(transport.getDisplayInfo()),
+                String.valueOf(transport.isConsumable()),
+                String.valueOf(transport.getMaxWildernessLevel()),
+                describeVars(transport.getVarbits(), TransportVarbit::getId, TransportVarbit::getValue, TransportVarbit::getCheck),
+                describeVars(transport.getVarPlayers(), TransportVarPlayer::getId, TransportVarPlayer::getValue, TransportVarPlayer::getCheck)));
+        }
+        return descriptions;
+    }
+
+    private static <T> String describeVars(Set<T> vars, ToIntFunction<T> id, ToIntFunction<T> value,
+        Function<T, TransportVarCheck> check) {
+        final Set<String> descriptions = new TreeSet<>();
+        for (T var : vars) {
+            descriptions.add(id.applyAsInt(var) + check.apply(var).getCode() + value.applyAsInt(var));
+        }
+        return descriptions.toString();
+    }
+}
@@ -0,0 +1,118 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import com.runepal.shortestpath.Util;
+
+import static net.runelite.api.Constants.REGION_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the flat collision file layout against the regions of collision-map.zip it is built from, and the
+ * regions decoded on demand against the flat layout, and that damaged files are not used.
+ */
+public class CollisionFileTest {
+    private static byte[] resource;
+    private static SplitFlagMap map;
+
+    @BeforeClass
+    public static void loadMap() {
+        resource = CollisionFile.readResource();
+        map = CollisionFile.fromResource(resource);
+    }
+
+    @Test
+    public void flagsMatchTheZip() throws IOException {
+        int regionCount = 0;
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(resource))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                final String[] n = entry.getName().split("_");
+                final int minX = Integer.parseInt(n[0]) * REGION_SIZE;
+                final int minY = Integer.parseInt(n[1]) * REGION_SIZE;
+                final FlagMap flags = new FlagMap(minX, minY, Util.readAllBytes(in));
+                for (int z = 0; z < flags.getPlaneCount(); ++z) {
+                    for (int y = minY; y < minY + REGION_SIZE; ++y) {
+                        for (int x = minX; x < minX + REGION_SIZE; ++x) {
+                            for (int flag = 0; flag < FlagMap.FLAG_COUNT; ++flag) {
+                                if (map.get(x, y, z, flag) != flags.get(x, y, z, flag)) {
+                                    fail("Flag " + flag + " differs at " + x + ", " + y + ", " + z);
+                                }
+                            }
+                        }
+                    }
+                }
+                ++regionCount;
+            }
+        }
+        assertEquals(regionCount, countRegions(map.getRegionMapPlaneCounts()));
+    }
+
+    @Test
+    public void regionsDecodedOnDemandMatchTheFile() {
+        // Small enough that regions are evicted and decoded again along the way
+        final SplitFlagMap decoded = CollisionFile.decodeOnDemand(resource, 1L << 20);
+        assertNotNull(decoded);
+        assertEquals(map.getChecksum(), decoded.getChecksum());
+
+        final SplitFlagMap.RegionExtent extents = SplitFlagMap.getRegionExtents();
+        final byte[] planeCounts = map.getRegionMapPlaneCounts();
+        for (int regionY = extents.getMinY(); regionY <= extents.getMaxY(); ++regionY) {
+            for (int regionX = extents.getMinX(); regionX <= extents.getMaxX(); ++regionX) {
+                final int index = (regionX - extents.getMinX()) + (regionY - extents.getMinY()) * (extents.getWidth() + 1);
+                assertEquals(planeCounts[index], decoded.getRegionMapPlaneCounts()[index]);
+                for (int z = 0; z < planeCounts[index]; ++z) {
+                    for (int y = regionY * REGION_SIZE; y < (regionY + 1) * REGION_SIZE; ++y) {
+                        for (int x = regionX * REGION_SIZE; x < (regionX + 1) * REGION_SIZE; ++x) {
+                            if (map.getDirections(x, y, z) != decoded.getDirections(x, y, z)
+                                || map.isBlocked(x, y, z) != decoded.isBlocked(x, y, z)
+                                || map.get(x, y, z, 0) != decoded.get(x, y, z, 0)
+                                || map.get(x, y, z, 1) != decoded.get(x, y, z, 1)) {
+                                fail("Decoded region differs at " + x + ", " + y + ", " + z);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void damagedFilesAreNotComplete() {
+        final ByteBuffer data = CollisionFile.build(resource, 0);
+        assertTrue(CollisionFile.isComplete(data));
+
+        final ByteBuffer truncated = data.duplicate().limit(data.capacity() - 1).slice().order(ByteOrder.LITTLE_ENDIAN);
+        assertFalse(CollisionFile.isComplete(truncated));
+
+        final ByteBuffer corrupt = ByteBuffer.allocate(data.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+        corrupt.put(data.duplicate().clear()).clear();
+        for (int entry = CollisionFile.HEADER_SIZE; ; entry += CollisionFile.TABLE_ENTRY_SIZE) {
+            if (corrupt.getInt(entry) != CollisionFile.NO_REGION) {
+                corrupt.putInt(entry, data.capacity() - 1);
+                break;
+            }
+        }
+        assertFalse(CollisionFile.isComplete(corrupt));
+    }
+
+    private static int countRegions(byte[] planeCounts) {
+        int count = 0;
+        for (byte planeCount : planeCounts) {
+            if (planeCount > 0) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
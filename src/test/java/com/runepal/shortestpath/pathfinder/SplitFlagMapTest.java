@@ -0,0 +1,151 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static net.runelite.api.Constants.REGION_SIZE;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the precomputed direction masks and blocked tiles against the per-flag lookups CollisionMap used to
+ * make for every move, over every region with collision data and the tiles just past the extents.
+ */
+public class SplitFlagMapTest {
+    private static SplitFlagMap map;
+
+    @BeforeClass
+    public static void loadMap() {
+        map = CollisionFile.fromResource(CollisionFile.readResource());
+    }
+
+    @Test
+    public void directionsMatchTheFlags() {
+        final SplitFlagMap.RegionExtent extents = SplitFlagMap.getRegionExtents();
+        final byte[] planeCounts = map.getRegionMapPlaneCounts();
+        for (int regionY = extents.getMinY(); regionY <= extents.getMaxY(); ++regionY) {
+            for (int regionX = extents.getMinX(); regionX <= extents.getMaxX(); ++regionX) {
+                final int planeCount = planeCounts[(regionX - extents.getMinX()) + (regionY - extents.getMinY()) * (extents.getWidth() + 1)];
+                for (int z = 0; z < planeCount; ++z) {
+                    for (int y = regionY * REGION_SIZE; y < (regionY + 1) * REGION_SIZE; ++y) {
+                        for (int x = regionX * REGION_SIZE; x < (regionX + 1) * REGION_SIZE; ++x) {
+                            check(map, x, y, z);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tilesPastTheExtentsDoNotReadAnotherRow() throws IOException {
+        // The same extents as the real map, since they are shared, with open regions where a row would wrap to
+        final SplitFlagMap.RegionExtent extents = SplitFlagMap.getRegionExtents();
+        final SplitFlagMap open = CollisionFile.fromResource(zip(extents,
+            new int[] { extents.getMinX(), extents.getMinY() },
+            new int[] { extents.getMinX(), extents.getMinY() + 1 },
+            new int[] { extents.getMaxX(), extents.getMaxY() - 1 },
+            new int[] { extents.getMaxX(), extents.getMaxY() }));
+        final int minX = extents.getMinX() * REGION_SIZE;
+        final int maxX = (extents.getMaxX() + 1) * REGION_SIZE;
+        for (int y = extents.getMinY() * REGION_SIZE; y < (extents.getMaxY() + 1) * REGION_SIZE; ++y) {
+            for (int x : new int[] { minX - 2, minX - 1, minX, maxX - 1, maxX, maxX + 1 }) {
+                check(open, x, y, 0);
+            }
+        }
+    }
+
+    // A collision-map.zip with every flag of the given regions set, and regions at the corners of the extents
+    private static byte[] zip(SplitFlagMap.RegionExtent extents, int[]... openRegions) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            final byte[] flags = new byte[REGION_SIZE * REGION_SIZE * FlagMap.FLAG_COUNT / Byte.SIZE];
+            Arrays.fill(flags, (byte) 0xFF);
+            for (int[] region : openRegions) {
+                out.putNextEntry(new ZipEntry(region[0] + "_" + region[1]));
+                out.write(flags);
+                out.closeEntry();
+            }
+            for (int[] corner : new int[][] { { extents.getMaxX(), extents.getMinY() }, { extents.getMinX(), extents.getMaxY() } }) {
+                out.putNextEntry(new ZipEntry(corner[0] + "_" + corner[1]));
+                out.write(new byte[1]);
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void check(SplitFlagMap map, int x, int y, int z) {
+        final boolean blocked = isBlocked(map, x, y, z);
+        final int directions = directions(map, x, y, z);
+        if (map.isBlocked(x, y, z) != blocked || map.getDirections(x, y, z) != directions) {
+            assertEquals("Blocked at " + x + ", " + y + ", " + z, blocked, map.isBlocked(x, y, z));
+            assertEquals("Directions at " + x + ", " + y + ", " + z, directions, map.getDirections(x, y, z));
+        }
+    }
+
+    private static boolean north(SplitFlagMap map, int x, int y, int z) {
+        return map.get(x, y, z, 0);
+    }
+
+    private static boolean south(SplitFlagMap map, int x, int y, int z) {
+        return north(map, x, y - 1, z);
+    }
+
+    private static boolean east(SplitFlagMap map, int x, int y, int z) {
+        return map.get(x, y, z, 1);
+    }
+
+    private static boolean west(SplitFlagMap map, int x, int y, int z) {
+        return east(map, x - 1, y, z);
+    }
+
+    private static boolean isBlocked(SplitFlagMap map, int x, int y, int z) {
+        return !north(map, x, y, z) && !south(map, x, y, z) && !east(map, x, y, z) && !west(map, x, y, z);
+    }
+
+    // The directions as CollisionMap derived them before they were precomputed
+    private static int directions(SplitFlagMap map, int x, int y, int z) {
+        final boolean[] traversable = new boolean[OrdinalDirection.values().length];
+        if (isBlocked(map, x, y, z)) {
+            // Blocked tiles, such as fairy rings, can be left towards any tile that is not blocked itself
+            final boolean westBlocked = isBlocked(map, x - 1, y, z);
+            final boolean eastBlocked = isBlocked(map, x + 1, y, z);
+            final boolean southBlocked = isBlocked(map, x, y - 1, z);
+            final boolean northBlocked = isBlocked(map, x, y + 1, z);
+            traversable[OrdinalDirection.WEST.ordinal()] = !westBlocked;
+            traversable[OrdinalDirection.EAST.ordinal()] = !eastBlocked;
+            traversable[OrdinalDirection.SOUTH.ordinal()] = !southBlocked;
+            traversable[OrdinalDirection.NORTH.ordinal()] = !northBlocked;
+            traversable[OrdinalDirection.SOUTH_WEST.ordinal()] = !isBlocked(map, x - 1, y - 1, z) && !westBlocked && !southBlocked;
+            traversable[OrdinalDirection.SOUTH_EAST.ordinal()] = !isBlocked(map, x + 1, y - 1, z) && !eastBlocked && !southBlocked;
+            traversable[OrdinalDirection.NORTH_WEST.ordinal()] = !isBlocked(map, x - 1, y + 1, z) && !westBlocked && !northBlocked;
+            traversable[OrdinalDirection.NORTH_EAST.ordinal()] = !isBlocked(map, x + 1, y + 1, z) && !eastBlocked && !northBlocked;
+        } else {
+            traversable[OrdinalDirection.WEST.ordinal()] = west(map, x, y, z);
+            traversable[OrdinalDirection.EAST.ordinal()] = east(map, x, y, z);
+            traversable[OrdinalDirection.SOUTH.ordinal()] = south(map, x, y, z);
+            traversable[OrdinalDirection.NORTH.ordinal()] = north(map, x, y, z);
+            traversable[OrdinalDirection.SOUTH_WEST.ordinal()] = south(map, x, y, z) && west(map, x, y - 1, z)
+                && west(map, x, y, z) && south(map, x - 1, y, z);
+            traversable[OrdinalDirection.SOUTH_EAST.ordinal()] = south(map, x, y, z) && east(map, x, y - 1, z)
+                && east(map, x, y, z) && south(map, x + 1, y, z);
+            traversable[OrdinalDirection.NORTH_WEST.ordinal()] = north(map, x, y, z) && west(map, x, y + 1, z)
+                && west(map, x, y, z) && north(map, x - 1, y, z);
+            traversable[OrdinalDirection.NORTH_EAST.ordinal()] = north(map, x, y, z) && east(map, x, y + 1, z)
+                && east(map, x, y, z) && north(map, x + 1, y, z);
+        }
+
+        int mask = 0;
+        for (int i = 0; i < traversable.length; ++i) {
+            if (traversable[i]) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,26 @@
+package com.runepal.shortestpath;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Compiles the transport and destination TSVs into the index read by {@link TransportIndex}.
+ * Run by the {@code generateTransportIndex} task when the plugin jar is built.
+ */
+public class TransportIndexGenerator {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: TransportIndexGenerator <output file>");
+        }
+
+        final TransportIndex index = new TransportIndex(Transport.loadAllFromResources(), Destination.loadAllFromResources());
+        final File output = new File(args[0]);
+        output.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            index.write(out);
+        }
+    }
+}
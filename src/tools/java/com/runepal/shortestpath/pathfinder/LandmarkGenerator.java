@@ -0,0 +1,345 @@
+package com.runepal.shortestpath.pathfinder;
+
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import com.runepal.shortestpath.Transport;
+import com.runepal.shortestpath.WorldPointUtil;
+
+import static net.runelite.api.Constants.REGION_SIZE;
+
+/**
+ * Precomputes the landmark distances read by {@link Landmarks}. Run with {@code ./gradlew generateLandmarks}
+ * whenever the collision map or the transports change.
+ * <p>
+ * Distances are computed over every tile of the collision map with every transport except teleports, and
+ * each edge can be used in both directions. Distances in that graph are never higher than in the graph a
+ * search actually uses, whatever transports the player can use, so the bounds derived from them are admissible.
+ * Landmarks are picked one at a time as the tile farthest from the landmarks picked so far.
+ */
+public class LandmarkGenerator {
+    private static final int LANDMARK_COUNT = 16;
+    private static final int SEED = WorldPointUtil.packWorldPoint(3222, 3218, 0); // Lumbridge
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final OrdinalDirection[] DIRECTIONS = OrdinalDirection.values();
+    private static final OrdinalDirection[] CARDINALS = {
+        OrdinalDirection.WEST, OrdinalDirection.EAST, OrdinalDirection.SOUTH, OrdinalDirection.NORTH
+    };
+
+    private final SplitFlagMap map;
+    private final long checksum;
+    private final SplitFlagMap.RegionExtent regionExtents;
+    private final int widthInclusive;
+    private final byte[] planes;
+    // Tiles are numbered region by region; each block of REGION_SIZE * REGION_SIZE tiles is one plane of a region
+    private final int[] regionTiles;
+    private final int[] blockRegions;
+    private final int tileCount;
+    // Transport endpoints outside the collision map, numbered after the tiles
+    private final Map<Integer, Integer> extraTiles = new HashMap<>();
+    private final List<Integer> extraPositions = new ArrayList<>();
+    // Both directions of every transport, plus stepping onto a blocked transport origin next to a tile
+    private final Map<Integer, List<int[]>> edges = new HashMap<>();
+    private final Set<Integer> endpoints = new HashSet<>();
+
+    private LandmarkGenerator(SplitFlagMap map, Map<Integer, Set<Transport>> transports, long checksum) {
+        this.map = map;
+        this.checksum = checksum;
+        regionExtents = SplitFlagMap.getRegionExtents();
+        widthInclusive = regionExtents.getWidth() + 1;
+        planes = map.getRegionMapPlaneCounts();
+
+        regionTiles = new int[planes.length];
+        int tiles = 0;
+        for (int index = 0; index < planes.length; ++index) {
+            regionTiles[index] = tiles;
+            tiles += planes[index] * REGION_SIZE * REGION_SIZE;
+        }
+        tileCount = tiles;
+        blockRegions = new int[tileCount / (REGION_SIZE * REGION_SIZE)];
+        for (int index = 0; index < planes.length; ++index) {
+            for (int z = 0; z < planes[index]; ++z) {
+                blockRegions[regionTiles[index] / (REGION_SIZE * REGION_SIZE) + z] = index;
+            }
+        }
+
+        for (Set<Transport> origin : transports.values()) {
+            for (Transport transport : origin) {
+                if (transport.getOrigin() == Transport.UNDEFINED_ORIGIN) {
+                    continue; // Teleports are only attached to the start of a search
+                }
+                addEdge(transport.getOrigin(), transport.getDestination(), transport.getDuration());
+                for (OrdinalDirection d : CARDINALS) {
+                    addEdge(transport.getOrigin(), move(transport.getOrigin(), d), 1);
+                }
+            }
+        }
+        addExtraTiles();
+    }
+
+    private void addEdge(int from, int to, int cost) {
+        edges.computeIfAbsent(from, k -> new ArrayList<>()).add(new int[]{to, cost});
+        edges.computeIfAbsent(to, k -> new ArrayList<>()).add(new int[]{from, cost});
+        endpoints.add(from);
+        endpoints.add(to);
+    }
+
+    private static int move(int packedPoint, OrdinalDirection d) {
+        return WorldPointUtil.packWorldPoint(
+            WorldPointUtil.unpackWorldX(packedPoint) + d.x,
+            WorldPointUtil.unpackWorldY(packedPoint) + d.y,
+            WorldPointUtil.unpackWorldPlane(packedPoint));
+    }
+
+    // Unmapped tiles a search can reach, i.e. transport endpoints and anything walkable from those or from the map edge
+    private void addExtraTiles() {
+        List<Integer> pending = new ArrayList<>();
+        for (int endpoint : endpoints) {
+            if (mappedTile(endpoint) < 0) {
+                pending.add(endpoint);
+            }
+        }
+        for (int tile = 0; tile < tileCount; ++tile) {
+            final int position = getPosition(tile);
+            final int x = WorldPointUtil.unpackWorldX(position) % REGION_SIZE;
+            final int y = WorldPointUtil.unpackWorldY(position) % REGION_SIZE;
+            if (x == 0 || y == 0 || x == REGION_SIZE - 1 || y == REGION_SIZE - 1) {
+                pending.add(position);
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            final int position = pending.remove(pending.size() - 1);
+            final int directions = getDirections(position);
+            for (OrdinalDirection d : DIRECTIONS) {
+                final int neighbor = move(position, d);
+                if ((directions & (1 << d.ordinal())) != 0 && mappedTile(neighbor) < 0 && !extraTiles.containsKey(neighbor)) {
+                    addExtraTile(neighbor);
+                    pending.add(neighbor);
+                }
+            }
+            if (mappedTile(position) < 0 && !extraTiles.containsKey(position)) {
+                addExtraTile(position);
+            }
+        }
+    }
+
+    private void addExtraTile(int position) {
+        extraTiles.put(position, tileCount + extraPositions.size());
+        extraPositions.add(position);
+    }
+
+    private int getDirections(int position) {
+        return map.getDirections(
+            WorldPointUtil.unpackWorldX(position),
+            WorldPointUtil.unpackWorldY(position),
+            WorldPointUtil.unpackWorldPlane(position));
+    }
+
+    private int regionIndex(int position) {
+        final int regionX = WorldPointUtil.unpackWorldX(position) / REGION_SIZE - regionExtents.getMinX();
+        final int regionY = WorldPointUtil.unpackWorldY(position) / REGION_SIZE - regionExtents.getMinY();
+        if (regionX < 0 || regionX >= widthInclusive || regionY < 0 || regionY * widthInclusive >= planes.length) {
+            return -1;
+        }
+        return regionY * widthInclusive + regionX;
+    }
+
+    private int mappedTile(int position) {
+        final int index = regionIndex(position);
+        final int z = WorldPointUtil.unpackWorldPlane(position);
+        if (index < 0 || z >= planes[index]) {
+            return -1;
+        }
+        return regionTiles[index] + (z * REGION_SIZE + WorldPointUtil.unpackWorldY(position) % REGION_SIZE) * REGION_SIZE
+            + WorldPointUtil.unpackWorldX(position) % REGION_SIZE;
+    }
+
+    private int getTile(int position) {
+        final int tile = mappedTile(position);
+        return tile >= 0 ? tile : extraTiles.getOrDefault(position, -1);
+    }
+
+    private int getPosition(int tile) {
+        if (tile >= tileCount) {
+            return extraPositions.get(tile - tileCount);
+        }
+        final int index = blockRegions[tile / (REGION_SIZE * REGION_SIZE)];
+        final int offset = tile - regionTiles[index];
+        return WorldPointUtil.packWorldPoint(
+            (index % widthInclusive + regionExtents.getMinX()) * REGION_SIZE + offset % REGION_SIZE,
+            (index / widthInclusive + regionExtents.getMinY()) * REGION_SIZE + offset / REGION_SIZE % REGION_SIZE,
+            offset / (REGION_SIZE * REGION_SIZE));
+    }
+
+    /** Whether a search can ever expand the tile, as opposed to e.g. the inside of a wall */
+    private boolean isRelevant(int tile) {
+        final int position = getPosition(tile);
+        return getDirections(position) != 0 || endpoints.contains(position);
+    }
+
+    private int[] distancesFrom(int source) {
+        final int[] distances = new int[tileCount + extraPositions.size()];
+        Arrays.fill(distances, INFINITY);
+        final boolean[] settled = new boolean[distances.length];
+        final BucketNodeQueue queue = new BucketNodeQueue();
+
+        distances[source] = 0;
+        queue.add(source, 0, false);
+        while (!queue.isEmpty()) {
+            final int tile = queue.poll();
+            if (settled[tile]) {
+                continue;
+            }
+            settled[tile] = true;
+
+            final int position = getPosition(tile);
+            final int directions = getDirections(position);
+            for (OrdinalDirection d : DIRECTIONS) {
+                final int neighbor = move(position, d);
+                // Walking edges can be used in both directions, like the transports
+                if ((directions & (1 << d.ordinal())) != 0 || (getDirections(neighbor) & (1 << opposite(d).ordinal())) != 0) {
+                    relax(queue, distances, tile, getTile(neighbor), 1);
+                }
+            }
+            for (int[] edge : edges.getOrDefault(position, Collections.emptyList())) {
+                relax(queue, distances, tile, getTile(edge[0]), edge[1]);
+            }
+        }
+        return distances;
+    }
+
+    private static OrdinalDirection opposite(OrdinalDirection d) {
+        for (OrdinalDirection o : DIRECTIONS) {
+            if (o.x == -d.x && o.y == -d.y) {
+                return o;
+            }
+        }
+        throw new IllegalArgumentException(d.toString());
+    }
+
+    private static void relax(BucketNodeQueue queue, int[] distances, int from, int to, int cost) {
+        if (to >= 0 && distances[from] + cost < distances[to]) {
+            distances[to] = distances[from] + cost;
+            queue.add(to, distances[to], false);
+        }
+    }
+
+    private void generate(String path) throws IOException {
+        final boolean[] relevant = new boolean[tileCount + extraPositions.size()];
+        for (int tile = 0; tile < relevant.length; ++tile) {
+            relevant[tile] = isRelevant(tile);
+        }
+
+        final int cellCount = tileCount / (Landmarks.CELL_SIZE * Landmarks.CELL_SIZE);
+        final char[] lowest = new char[cellCount * LANDMARK_COUNT];
+        final char[] highest = new char[cellCount * LANDMARK_COUNT];
+        final int[] landmarks = new int[LANDMARK_COUNT];
+
+        // The closest distance to any landmark picked so far, starting from the seed
+        int[] closest = distancesFrom(getTile(SEED));
+        for (int i = 0; i < LANDMARK_COUNT; ++i) {
+            int farthest = -1;
+            for (int tile = 0; tile < closest.length; ++tile) {
+                if (relevant[tile] && closest[tile] != INFINITY && (farthest < 0 || closest[tile] > closest[farthest])) {
+                    farthest = tile;
+                }
+            }
+            landmarks[i] = getPosition(farthest);
+
+            final int[] distances = distancesFrom(farthest);
+            storeCells(distances, relevant, i, lowest, highest);
+            for (int tile = 0; tile < closest.length; ++tile) {
+                // The seed itself is not a landmark
+                closest[tile] = i == 0 ? distances[tile] : Math.min(closest[tile], distances[tile]);
+            }
+            System.out.println("Landmark " + (i + 1) + "/" + LANDMARK_COUNT + ": " + WorldPointUtil.unpackWorldPoint(landmarks[i]));
+        }
+
+        write(path, landmarks, lowest, highest);
+    }
+
+    // Reduces the distances of each cell to the lowest reachable one and the highest one of a tile a search can expand
+    private void storeCells(int[] distances, boolean[] relevant, int landmark, char[] lowest, char[] highest) {
+        final int cellTiles = Landmarks.CELL_SIZE * Landmarks.CELL_SIZE;
+        final int[] cellLowest = new int[tileCount / cellTiles];
+        final int[] cellHighest = new int[cellLowest.length];
+        Arrays.fill(cellLowest, INFINITY);
+
+        for (int tile = 0; tile < tileCount; ++tile) {
+            final int position = getPosition(tile);
+            final int index = regionIndex(position);
+            final int offset = tile - regionTiles[index];
+            final int x = offset % REGION_SIZE;
+            final int y = offset / REGION_SIZE % REGION_SIZE;
+            final int z = offset / (REGION_SIZE * REGION_SIZE);
+            final int cell = regionTiles[index] / cellTiles + z * Landmarks.CELLS_PER_PLANE
+                + y / Landmarks.CELL_SIZE * Landmarks.CELLS_PER_SIDE + x / Landmarks.CELL_SIZE;
+
+            final int distance = distances[tile] >= Landmarks.UNKNOWN ? INFINITY : distances[tile];
+            cellLowest[cell] = Math.min(cellLowest[cell], distance);
+            if (relevant[tile]) {
+                cellHighest[cell] = distance == INFINITY || cellHighest[cell] == INFINITY ? INFINITY : Math.max(cellHighest[cell], distance);
+            }
+        }
+
+        for (int cell = 0; cell < cellLowest.length; ++cell) {
+            final boolean reachable = cellLowest[cell] != INFINITY;
+            lowest[cell * LANDMARK_COUNT + landmark] = (char) (reachable ? cellLowest[cell] : Landmarks.UNKNOWN);
+            highest[cell * LANDMARK_COUNT + landmark] = (char) (reachable && cellHighest[cell] != INFINITY ? cellHighest[cell] : Landmarks.UNKNOWN);
+        }
+    }
+
+    private void write(String path, int[] landmarks, char[] lowest, char[] highest) throws IOException {
+        final int cellTiles = Landmarks.CELL_SIZE * Landmarks.CELL_SIZE;
+        int regionCount = 0;
+        for (byte planeCount : planes) {
+            if (planeCount > 0) {
+                ++regionCount;
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(Landmarks.VERSION);
+            out.writeLong(checksum);
+            out.writeInt(landmarks.length);
+            for (int landmark : landmarks) {
+                out.writeInt(landmark);
+            }
+            out.writeInt(regionCount);
+            out.writeInt(tileCount / cellTiles);
+            for (int index = 0; index < planes.length; ++index) {
+                if (planes[index] == 0) {
+                    continue;
+                }
+                out.writeShort(index % widthInclusive + regionExtents.getMinX());
+                out.writeShort(index / widthInclusive + regionExtents.getMinY());
+                out.writeByte(planes[index]);
+                final int first = regionTiles[index] / cellTiles * landmarks.length;
+                for (int j = 0, n = planes[index] * Landmarks.CELLS_PER_PLANE * landmarks.length; j < n; ++j) {
+                    out.writeChar(lowest[first + j]);
+                    out.writeChar(highest[first + j]);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: LandmarkGenerator <output file>");
+        }
+
+        final SplitFlagMap map = SplitFlagMap.fromResources();
+        final Map<Integer, Set<Transport>> transports = Transport.loadAllFromResources();
+        new LandmarkGenerator(map, transports, Landmarks.checksum(map, transports)).generate(args[0]);
+    }
+}